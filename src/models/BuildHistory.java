@@ -0,0 +1,313 @@
+package models;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * The numbered builds of a job with the disk space and the timestamp of each
+ * one, sorted from the newest to the oldest build, that is by descending build
+ * number as Hudson orders them.
+ *
+ * Once sorted, the history keeps the running total of the build sizes so
+ * that the disk space taken by the newest <i>n</i> builds is answered in
+ * constant time, whatever the number of retention policies evaluated.
+ */
+public class BuildHistory {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int size;
+    private int[] numbers = new int[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private long[] sizes = new long[INITIAL_CAPACITY];
+    private long[] cumulativeSizes;
+    private long[] earliestTimestamps;
+    private Consumer<BuildHistory> timestampRefiner;
+
+    /**
+     * Reads the build history of a job by traversing its builds directory.
+     *
+     * @param buildsDirectory the builds directory of a job
+     * @return the sorted build history, empty if the directory doesn't exist
+     */
+    static BuildHistory read(Path buildsDirectory) {
+
+        BuildHistory history = new BuildHistory();
+
+        if (!Files.isDirectory(buildsDirectory)) {
+            history.sort();
+            return history;
+        }
+
+        try (DirectoryStream<Path> buildDirectories = Files.newDirectoryStream(buildsDirectory)) {
+
+            for (Path buildDirectory : buildDirectories) {
+
+                int number = parseBuildNumber(buildDirectory);
+                BasicFileAttributes attrs = Files.readAttributes(buildDirectory, BasicFileAttributes.class);
+
+                if (number < 0 || !attrs.isDirectory()) {
+                    continue;
+                }
+
+                int build = history.addBuild(number, attrs.lastModifiedTime().toMillis());
+                history.addToSize(build, sizeOf(buildDirectory.toRealPath()));
+            }
+
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+        }
+
+        history.sort();
+        return history;
+    }
+
+    /**
+     * @param directory a directory
+     * @return the size in bytes of the files inside the directory
+     * @throws IOException if the directory can not be traversed
+     */
+    static long sizeOf(Path directory) throws IOException {
+
+        long[] bytes = new long[1];
+
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                bytes[0] += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return bytes[0];
+    }
+
+    /**
+     * @return the number of a build directory or -1 if the directory is not
+     * named after a build number
+     */
+    static int parseBuildNumber(Path buildDirectory) {
+
+        try {
+            return Integer.parseInt(buildDirectory.getFileName().toString());
+        } catch (NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
+    /**
+     * Adds a build with no disk space to the history.
+     *
+     * @param number the build number
+     * @param timestamp the time of the build in milliseconds since the epoch
+     * @return the index to use when adding disk space to the build
+     */
+    int addBuild(int number, long timestamp) {
+
+        if (size == numbers.length) {
+            numbers = Arrays.copyOf(numbers, size * 2);
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            sizes = Arrays.copyOf(sizes, size * 2);
+        }
+
+        numbers[size] = number;
+        timestamps[size] = timestamp;
+        cumulativeSizes = null;
+        earliestTimestamps = null;
+
+        return size++;
+    }
+
+    /**
+     * Adds disk space to a build that was added to the history.
+     *
+     * @param build the index returned by {@link #addBuild(int, long)}
+     * @param bytes the disk space to add
+     */
+    void addToSize(int build, long bytes) {
+
+        sizes[build] += bytes;
+    }
+
+    /**
+     * Replaces the timestamp of a build with a more accurate one.
+     *
+     * @param build the index returned by {@link #addBuild(int, long)}, or the
+     * position of the build once the history is sorted
+     * @param timestamp the time of the build in milliseconds since the epoch
+     */
+    void setTimestamp(int build, long timestamp) {
+
+        timestamps[build] = timestamp;
+        earliestTimestamps = null;
+    }
+
+    /**
+     * Sets how the timestamps of the builds are replaced with more accurate
+     * ones. The refiner runs once, the first time a timestamp is read, so
+     * that reports that don't need the time of the builds don't pay for it.
+     *
+     * @param timestampRefiner calls {@link #setTimestamp(int, long)} on the
+     * sorted history
+     */
+    void setTimestampRefiner(Consumer<BuildHistory> timestampRefiner) {
+
+        this.timestampRefiner = timestampRefiner;
+    }
+
+    /**
+     * Sorts the builds from the newest to the oldest by build number and
+     * computes the running total of their sizes. Must be called once all the
+     * builds are added.
+     */
+    void sort() {
+
+        int[] order = IntStream.range(0, size).boxed()
+                .sorted(Comparator.<Integer>comparingInt(i -> numbers[i]).reversed())
+                .mapToInt(Integer::intValue).toArray();
+
+        int[] sortedNumbers = new int[size];
+        long[] sortedTimestamps = new long[size];
+        long[] sortedSizes = new long[size];
+        cumulativeSizes = new long[size + 1];
+
+        for (int i = 0; i < size; i++) {
+            sortedNumbers[i] = numbers[order[i]];
+            sortedTimestamps[i] = timestamps[order[i]];
+            sortedSizes[i] = sizes[order[i]];
+            cumulativeSizes[i + 1] = cumulativeSizes[i] + sortedSizes[i];
+        }
+
+        numbers = sortedNumbers;
+        timestamps = sortedTimestamps;
+        sizes = sortedSizes;
+        earliestTimestamps = null;
+    }
+
+    /**
+     * @return the number of builds in the history
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * @param index position of the build, 0 being the newest
+     * @return the build number
+     */
+    public int getNumber(int index) {
+
+        checkIndex(index);
+        return numbers[index];
+    }
+
+    /**
+     * @param index position of the build, 0 being the newest
+     * @return the time of the build in milliseconds since the epoch, taken
+     * from the runmap, else from the start time in the build.xml file, else
+     * from the last modification of the build directory
+     */
+    public long getTimestamp(int index) {
+
+        checkIndex(index);
+        refineTimestamps();
+        return timestamps[index];
+    }
+
+    /**
+     * @param index position of the build, 0 being the newest
+     * @return the disk space in bytes that the build directory takes
+     */
+    public long getSize(int index) {
+
+        checkIndex(index);
+        return sizes[index];
+    }
+
+    /**
+     * @return the disk space in bytes that all the builds take
+     */
+    public long getTotalSize() {
+
+        return getSizeOfNewest(size);
+    }
+
+    /**
+     * @param count a number of builds
+     * @return the disk space in bytes that the newest <code>count</code>
+     * builds take
+     */
+    public long getSizeOfNewest(int count) {
+
+        checkSorted();
+        return cumulativeSizes[Math.max(0, Math.min(count, size))];
+    }
+
+    /**
+     * @param time milliseconds since the epoch
+     * @return the number of newest builds before the first one, in build
+     * number order, whose timestamp is before <code>time</code>
+     */
+    public int countBuildsSince(long time) {
+
+        checkSorted();
+        refineTimestamps();
+
+        // timestamps are not always in build order, so the search runs over
+        // the earliest timestamp of each prefix, which is descending
+        if (earliestTimestamps == null) {
+            earliestTimestamps = new long[size];
+            for (int i = 0; i < size; i++) {
+                earliestTimestamps[i] = i == 0 ? timestamps[i] : Math.min(earliestTimestamps[i - 1], timestamps[i]);
+            }
+        }
+
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (earliestTimestamps[middle] >= time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private void refineTimestamps() {
+
+        if (timestampRefiner != null) {
+            Consumer<BuildHistory> refiner = timestampRefiner;
+            timestampRefiner = null;
+            refiner.accept(this);
+        }
+    }
+
+    private void checkIndex(int index) {
+
+        checkSorted();
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("build " + index + " not in history of size " + size);
+        }
+    }
+
+    private void checkSorted() {
+
+        if (cumulativeSizes == null) {
+            throw new IllegalStateException("build history is not sorted");
+        }
+    }
+
+}
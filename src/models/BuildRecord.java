@@ -0,0 +1,200 @@
+package models;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * When and where a build ran, read from its build.xml file.
+ */
+public class BuildRecord {
+
+    /**
+     * Name given to the builds that don't say where they ran, which are the
+     * builds run by the master itself.
+     */
+    public static final String MASTER = "master";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private final int number;
+    private final String builtOn;
+    private final long startTime;
+    private final long duration;
+
+    /**
+     * Constructor.
+     *
+     * @param number the build number
+     * @param builtOn the name of the node the build ran on
+     * @param startTime the start of the build in milliseconds since the epoch
+     * @param duration the duration of the build in milliseconds, 0 while it
+     * runs
+     */
+    public BuildRecord(int number, String builtOn, long startTime, long duration) {
+
+        this.number = number;
+        this.builtOn = builtOn;
+        this.startTime = startTime;
+        this.duration = duration;
+    }
+
+    /**
+     * Reads the build.xml files of all the numbered builds of a job.
+     *
+     * @param buildsDirectory the builds directory of a job
+     * @return the records of the builds whose file has a start time, in no
+     * particular order
+     */
+    static List<BuildRecord> readAll(Path buildsDirectory) {
+
+        List<BuildRecord> records = new ArrayList<>();
+
+        if (!Files.isDirectory(buildsDirectory)) {
+            return records;
+        }
+
+        try (DirectoryStream<Path> buildDirectories = Files.newDirectoryStream(buildsDirectory)) {
+
+            for (Path buildDirectory : buildDirectories) {
+
+                int number = BuildHistory.parseBuildNumber(buildDirectory);
+                Path buildFile = buildDirectory.resolve("build.xml");
+
+                if (number < 0 || !Files.isRegularFile(buildFile)) {
+                    continue;
+                }
+
+                try (InputStream input = Files.newInputStream(buildFile)) {
+                    BuildRecord record = parse(number, input);
+                    if (record != null) {
+                        records.add(record);
+                    }
+                }
+            }
+
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+        }
+
+        return records;
+    }
+
+    /**
+     * Parses the content of a build.xml file. Only the direct children of the
+     * root element are considered, so the timestamps and durations of the
+     * actions recorded in the build are ignored.
+     *
+     * @param number the build number
+     * @param input the content of the build file
+     * @return the record or <code>null</code> if the file has no
+     * <code>startTime</code> nor <code>timestamp</code> or can not be parsed
+     */
+    static BuildRecord parse(int number, InputStream input) {
+
+        String builtOn = null;
+        long startTime = -1;
+        long timestamp = -1;
+        long duration = 0;
+
+        try {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(input);
+            try {
+                int depth = 0;
+
+                while (reader.hasNext()) {
+
+                    int event = reader.next();
+
+                    if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                        continue;
+                    }
+
+                    if (event != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+
+                    depth++;
+
+                    if (depth != 2) {
+                        continue;
+                    }
+
+                    String name = reader.getLocalName();
+
+                    if (name.equals("builtOn")) {
+                        builtOn = reader.getElementText().trim();
+                        depth--;
+                    } else if (name.equals("startTime")) {
+                        startTime = Long.parseLong(reader.getElementText().trim());
+                        depth--;
+                    } else if (name.equals("timestamp")) {
+                        timestamp = Long.parseLong(reader.getElementText().trim());
+                        depth--;
+                    } else if (name.equals("duration")) {
+                        duration = Long.parseLong(reader.getElementText().trim());
+                        depth--;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | NumberFormatException ex) {
+            System.out.println(ex.getMessage());
+            return null;
+        }
+
+        long start = startTime >= 0 ? startTime : timestamp;
+
+        if (start < 0) {
+            return null;
+        }
+
+        return new BuildRecord(number, builtOn == null || builtOn.isEmpty() ? MASTER : builtOn.intern(), start,
+                duration);
+    }
+
+    /**
+     * @return the build number
+     */
+    public int getNumber() {
+
+        return number;
+    }
+
+    /**
+     * @return the name of the node the build ran on, {@link #MASTER} if the
+     * build doesn't say
+     */
+    public String getBuiltOn() {
+
+        return builtOn;
+    }
+
+    /**
+     * @return the start of the build in milliseconds since the epoch
+     */
+    public long getStartTime() {
+
+        return startTime;
+    }
+
+    /**
+     * @return the duration of the build in milliseconds, 0 while it runs
+     */
+    public long getDuration() {
+
+        return duration;
+    }
+
+}
@@ -0,0 +1,459 @@
+package models;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Reads the jobs of a Hudson home directory from any file system: the live
+ * directory on the default file system or the root of a mounted archive.
+ */
+public class DirectorySource implements HudsonHomeSource {
+
+    private final Path home;
+
+    /**
+     * Constructor.
+     *
+     * @param home the Hudson home directory
+     *
+     */
+    public DirectorySource(Path home) {
+
+        this.home = home.toAbsolutePath();
+
+    }
+
+    /**
+     * @return the Hudson home directory
+     */
+    public Path getHome() {
+
+        return home;
+    }
+
+    /**
+     * Creates a Job object for every job in the home directory and hands it
+     * to an action.
+     *
+     * Team jobs (<code>teams/*&#47;jobs/*</code>), public jobs
+     * (<code>jobs/*</code>) and jobs nested in folder jobs
+     * (<code>&lt;job&gt;/jobs/*</code>) are all found in a single traversal
+     * of each job directory. The attributes read during the traversal provide
+     * the size, modification time, latest build and build history of each
+     * job, so no directory is listed or checked more than once. Numbered
+     * links of a builds directory that point to a directory count as builds.
+     *
+     * Links are followed down to the job directories, as
+     * {@link #forEachJobDirectory(BiConsumer)} does, so both find the same
+     * jobs. Inside a job only the links to nested jobs are followed.
+     *
+     * @param action the action to be performed on each job
+     * @throws IOException if the home directory can not be listed
+     */
+    @Override
+    public void forEachJob(Consumer<Job> action) throws IOException {
+
+        JobVisitor visitor = new JobVisitor(action);
+
+        for (Map.Entry<String, Path> job : listTopLevelJobDirectories()) {
+            visitor.walkJob(job.getValue(), job.getKey(), job.getValue().getFileName().toString(), 0);
+        }
+
+    }
+
+    /**
+     * Hands the directory of every job in the home directory to an action,
+     * along with the name of its team. Only the team, jobs and folder
+     * directories are listed, nothing inside the jobs is read.
+     *
+     * @param action the action to be performed on each job directory
+     * @throws IOException if a directory can not be listed
+     */
+    public void forEachJobDirectory(BiConsumer<String, Path> action) throws IOException {
+
+        for (Map.Entry<String, Path> job : listTopLevelJobDirectories()) {
+            visitJobDirectory(job.getKey(), job.getValue(), 0, action);
+        }
+
+    }
+
+    /**
+     * @return the directories of the team jobs and of the public jobs, with
+     * the name of their team, following links
+     */
+    private List<Map.Entry<String, Path>> listTopLevelJobDirectories() throws IOException {
+
+        List<Map.Entry<String, Path>> jobs = new ArrayList<>();
+
+        for (Path teamDirectory : listDirectories(home.resolve("teams"))) {
+
+            String teamName = teamDirectory.getFileName().toString();
+
+            for (Path jobDirectory : listDirectories(teamDirectory.resolve("jobs"))) {
+                jobs.add(new AbstractMap.SimpleEntry<>(teamName, jobDirectory));
+            }
+        }
+
+        for (Path jobDirectory : listDirectories(home.resolve("jobs"))) {
+            jobs.add(new AbstractMap.SimpleEntry<>("public", jobDirectory));
+        }
+
+        return jobs;
+    }
+
+    private void visitJobDirectory(String teamName, Path jobDirectory, int nestingLevel,
+            BiConsumer<String, Path> action) throws IOException {
+
+        action.accept(teamName, jobDirectory);
+
+        if (nestingLevel < Hudson.MAX_FOLDER_NESTING) {
+            for (Path nestedJob : listDirectories(jobDirectory.resolve("jobs"))) {
+                visitJobDirectory(teamName, nestedJob, nestingLevel + 1, action);
+            }
+        }
+
+    }
+
+    /**
+     * @param parent a directory
+     * @return the directories inside <code>parent</code>, empty if it is not
+     * a directory
+     */
+    private static List<Path> listDirectories(Path parent) throws IOException {
+
+        List<Path> directories = new ArrayList<>();
+
+        if (!Files.isDirectory(parent)) {
+            return directories;
+        }
+
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(parent, Files::isDirectory)) {
+            for (Path child : children) {
+                directories.add(child);
+            }
+        }
+
+        return directories;
+    }
+
+    @Override
+    public DirectorySource getDirectorySource() {
+
+        return this;
+    }
+
+    /**
+     * Job directory being traversed, along with the data collected from the
+     * files and directories inside it.
+     */
+    private static class JobFrame {
+
+        // the directory traversed, which is the target of the job directory
+        // when that one is a link
+        final Path directory;
+        final Path jobDirectory;
+        final String teamName;
+        final String jobName;
+        final int nestingLevel;
+        final BuildHistory builds = new BuildHistory();
+        long sizeInBytes;
+        int latestBuild = -1;
+        final Map<String, Long> unnumberedBuilds = new TreeMap<>();
+        final Map<String, Long> unnumberedBuildTimes = new HashMap<>();
+        final Map<Integer, Path> linkedBuilds = new TreeMap<>();
+        boolean hasConfigFile;
+        boolean hasRunmapFile;
+        Path currentBuildDirectory;
+        int currentBuild = -1;
+        String currentUnnumberedBuild;
+
+        JobFrame(Path directory, Path jobDirectory, String teamName, String jobName, int nestingLevel) {
+            this.directory = directory;
+            this.jobDirectory = jobDirectory;
+            this.teamName = teamName;
+            this.jobName = jobName;
+            this.nestingLevel = nestingLevel;
+        }
+    }
+
+    /**
+     * Visitor that traverses a job directory and builds a Job when the
+     * traversal of the job, or of a job nested in it, is complete. Folder jobs
+     * include the size of the jobs nested in them, as <code>du</code> would
+     * report.
+     */
+    private static class JobVisitor extends SimpleFileVisitor<Path> {
+
+        private final Consumer<Job> action;
+        private final ArrayDeque<JobFrame> jobs = new ArrayDeque<>();
+
+        JobVisitor(Consumer<Job> action) {
+            this.action = action;
+        }
+
+        /**
+         * Traverses a job directory, or the directory it links to, and hands
+         * the job and the jobs nested in it to the action.
+         *
+         * @param jobDirectory the path of the job directory
+         * @param teamName the team of the job
+         * @param jobName the full name of the job
+         * @param nestingLevel the number of folders the job is nested in
+         */
+        void walkJob(Path jobDirectory, String teamName, String jobName, int nestingLevel) {
+
+            JobFrame frame = null;
+
+            try {
+                Path directory = Files.isSymbolicLink(jobDirectory) ? jobDirectory.toRealPath() : jobDirectory;
+                frame = new JobFrame(directory, jobDirectory, teamName, jobName, nestingLevel);
+                jobs.push(frame);
+
+                Files.walkFileTree(directory, this);
+
+            } catch (IOException ex) {
+                System.out.println(ex.getMessage());
+            }
+
+            // the job directory could not be read at all
+            if (frame != null && jobs.peek() == frame) {
+                jobs.pop();
+            }
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+
+            JobFrame current = jobs.peek();
+
+            if (dir.equals(current.directory)) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            Path parent = dir.getParent();
+            String parentName = parent.getFileName().toString();
+
+            if (parent.getParent().equals(current.directory)) {
+
+                if (parentName.equals("jobs") && current.nestingLevel < Hudson.MAX_FOLDER_NESTING) {
+
+                    Path jobDirectory = current.jobDirectory.resolve("jobs").resolve(dir.getFileName().toString());
+                    jobs.push(new JobFrame(dir, jobDirectory, current.teamName,
+                            current.jobName + "/" + dir.getFileName(), current.nestingLevel + 1));
+
+                } else if (parentName.equals("builds")) {
+
+                    int number = BuildHistory.parseBuildNumber(dir);
+
+                    current.currentBuildDirectory = dir;
+
+                    if (number >= 0) {
+                        current.latestBuild = Math.max(current.latestBuild, number);
+                        current.currentBuild = current.builds.addBuild(number, attrs.lastModifiedTime().toMillis());
+                    } else {
+                        current.currentUnnumberedBuild = dir.getFileName().toString();
+                        current.unnumberedBuilds.put(current.currentUnnumberedBuild, 0L);
+                        current.unnumberedBuildTimes.put(current.currentUnnumberedBuild,
+                                attrs.lastModifiedTime().toMillis());
+                    }
+
+                }
+
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+
+            JobFrame current = jobs.peek();
+
+            if (current != null) {
+
+                current.sizeInBytes += attrs.size();
+
+                if (attrs.isSymbolicLink() && current.currentBuildDirectory == null) {
+                    walkLinkedJobs(current, file);
+                }
+
+                if (current.currentBuild >= 0) {
+                    current.builds.addToSize(current.currentBuild, attrs.size());
+                } else if (current.currentUnnumberedBuild != null) {
+                    current.unnumberedBuilds.merge(current.currentUnnumberedBuild, attrs.size(), Long::sum);
+                } else if (attrs.isSymbolicLink() && BuildHistory.parseBuildNumber(file) >= 0
+                        && file.getParent().equals(current.directory.resolve("builds"))) {
+                    addLinkedBuild(current, file);
+                } else if (file.getFileName().toString().equals("config.xml")
+                        && file.getParent().equals(current.directory)) {
+                    current.hasConfigFile = true;
+                } else if (file.getFileName().toString().equals("_runmap.xml")
+                        && file.getParent().equals(current.directory.resolve("builds"))) {
+                    current.hasRunmapFile = true;
+                }
+
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException ex) {
+
+            System.out.println(ex.getMessage());
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException ex) {
+
+            if (ex != null) {
+                System.out.println(ex.getMessage());
+            }
+
+            JobFrame current = jobs.peek();
+
+            if (current != null && dir.equals(current.currentBuildDirectory)) {
+                current.currentBuildDirectory = null;
+                current.currentBuild = -1;
+                current.currentUnnumberedBuild = null;
+            }
+
+            if (current == null || !current.directory.equals(dir)) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            jobs.pop();
+
+            JobFrame folder = jobs.peek();
+            if (folder != null) {
+                folder.sizeInBytes += current.sizeInBytes;
+            }
+
+            resolveLinkedBuilds(current);
+
+            Job job = new Job(current.jobDirectory, current.teamName, current.hasConfigFile, current.hasRunmapFile);
+            job.setJobName(current.jobName);
+            job.setDiskSpaceSize((current.sizeInBytes + 1023) / 1024);
+            job.setLatestBuildDirectory(current.latestBuild < 0 ? null
+                    : current.jobDirectory.resolve("builds").resolve(Integer.toString(current.latestBuild)));
+            current.builds.sort();
+            job.setBuildHistory(current.builds);
+            job.setUnnumberedBuildDirectories(current.unnumberedBuilds);
+
+            action.accept(job);
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        /**
+         * Traverses the jobs reached through a link of a folder: a link to a
+         * job directory inside its <code>jobs</code> directory, or a
+         * <code>jobs</code> directory that is itself a link.
+         */
+        private void walkLinkedJobs(JobFrame current, Path link) {
+
+            Path parent = link.getParent();
+            String name = link.getFileName().toString();
+
+            boolean jobsLink = parent.equals(current.directory) && name.equals("jobs");
+            boolean jobLink = parent.getFileName().toString().equals("jobs")
+                    && current.directory.equals(parent.getParent());
+
+            if (!(jobsLink || jobLink) || current.nestingLevel >= Hudson.MAX_FOLDER_NESTING
+                    || !Files.isDirectory(link)) {
+                return;
+            }
+
+            try {
+                if (jobsLink) {
+
+                    for (Path nestedJob : listDirectories(link)) {
+                        String nestedName = nestedJob.getFileName().toString();
+                        walkJob(current.jobDirectory.resolve("jobs").resolve(nestedName), current.teamName,
+                                current.jobName + "/" + nestedName, current.nestingLevel + 1);
+                    }
+
+                } else {
+
+                    walkJob(current.jobDirectory.resolve("jobs").resolve(name), current.teamName,
+                            current.jobName + "/" + name, current.nestingLevel + 1);
+                }
+            } catch (IOException ex) {
+                System.out.println(ex.getMessage());
+            }
+        }
+
+        /**
+         * Records a numbered link of the builds directory, such as the ones
+         * older Hudson versions create towards the build directories named
+         * after their timestamp, when it points to a directory.
+         */
+        private void addLinkedBuild(JobFrame current, Path link) {
+
+            try {
+                Path target = link.getParent().resolve(Files.readSymbolicLink(link)).normalize();
+                if (Files.isDirectory(target)) {
+                    current.linkedBuilds.put(BuildHistory.parseBuildNumber(link), target);
+                }
+            } catch (IOException ex) {
+                System.out.println(ex.getMessage());
+            }
+        }
+
+        /**
+         * Adds the builds reached through numbered links to the build
+         * history, with the size and time of the directory they point to.
+         * The directories of the builds directory that are link targets hold
+         * live builds, so they are no longer unnumbered leftovers.
+         */
+        private void resolveLinkedBuilds(JobFrame current) {
+
+            Path buildsDirectory = current.directory.resolve("builds");
+            List<String> linkTargets = new ArrayList<>();
+
+            for (Map.Entry<Integer, Path> link : current.linkedBuilds.entrySet()) {
+
+                Path target = link.getValue();
+                String targetName = target.getFileName().toString();
+                long bytes;
+                long lastModified;
+
+                if (buildsDirectory.equals(target.getParent()) && current.unnumberedBuilds.containsKey(targetName)) {
+                    bytes = current.unnumberedBuilds.get(targetName);
+                    lastModified = current.unnumberedBuildTimes.get(targetName);
+                    linkTargets.add(targetName);
+                } else {
+                    try {
+                        bytes = BuildHistory.sizeOf(target);
+                        lastModified = Files.getLastModifiedTime(target).toMillis();
+                    } catch (IOException ex) {
+                        System.out.println(ex.getMessage());
+                        continue;
+                    }
+                }
+
+                int build = current.builds.addBuild(link.getKey(), lastModified);
+                current.builds.addToSize(build, bytes);
+                current.latestBuild = Math.max(current.latestBuild, link.getKey());
+            }
+
+            current.unnumberedBuilds.keySet().removeAll(linkTargets);
+        }
+    }
+
+}
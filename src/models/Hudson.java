@@ -1,23 +1,42 @@
 package models;
 
-import java.io.File;
-import java.io.FilenameFilter;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.function.Consumer;
 
-public class Hudson {
+public class Hudson implements Closeable {
 
-    private final String homeDirectory;
+    /**
+     * Maximum number of folder jobs a job can be nested in to be found.
+     */
+    public static final int MAX_FOLDER_NESTING = 8;
+
+    private final HudsonHomeSource source;
     private ArrayList<Job> hudsonJobs;
 
     /**
      * Constructor.
      *
-     * @param homeDirectory absolute path for the Hudson home directory
+     * @param homeDirectory absolute path for the Hudson home directory, or for
+     * a zip or tar backup of it
      * 
      */
     public Hudson(String homeDirectory) {
 
-        this.homeDirectory = homeDirectory;
+        this(HudsonHomeSource.forLocation(homeDirectory));
+
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param source the source the jobs of the Hudson instance are read from
+     * 
+     */
+    public Hudson(HudsonHomeSource source) {
+
+        this.source = source;
 
     }
 
@@ -36,74 +55,37 @@ public class Hudson {
         }
 
         ArrayList<Job> allJobs = new ArrayList();
-
-        File[] teamDirectories = getTeamDirectories(homeDirectory);
-
-        for (File teamDirectory : teamDirectories) {
-
-            File[] jobDirectories = getJobDirectories(teamDirectory.getAbsolutePath());
-
-            for (File jobDirectory : jobDirectories) {
-
-                Job hudsonJob = new Job(jobDirectory.getAbsolutePath());
-                allJobs.add(hudsonJob);
-
-            }
-
-        }
+        forEachJob(allJobs::add);
 
         this.hudsonJobs = allJobs;
         return allJobs;
     }
 
     /**
-     * Returns an array of File objects that represent the root directories for
-     * all the existing teams in a Hudson instance.
+     * Creates a Job object for every job that exists in a Hudson instance and
+     * hands it to an action. No reference to the jobs is kept.
      *
-     * @param hudsonHome an absolute path to the Hudson home directory
-     * @return An array with the File objects of all the teams in a Hudson
-     * instance
+     * @param action the action to be performed on each job
      */
-    private File[] getTeamDirectories(String hudsonHome) {
-
-        return getSubDirectories(hudsonHome + File.separator + "teams");
-
-    }
+    public void forEachJob(Consumer<Job> action) {
 
-    /**
-     * Returns an array of File objects that represent the root directories for
-     * all the jobs that belong to a team.
-     *
-     * @param teamDirectory an absolute path to the Team root directory
-     * @return An array with the File objects of all the jobs of a Team in
-     * Hudson.
-     */
-    private File[] getJobDirectories(String teamDirectory) {
+        try {
+            source.forEachJob(action);
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+        }
 
-        return getSubDirectories(teamDirectory + File.separator + "jobs");
     }
 
     /**
-     * Returns an array of Files of all the directories inside a parent
-     * directory
-     *
-     * @param parent an absolute path to a directory
-     * @return An array with the File reference to all the directories inside a
-     * parent directory
+     * Releases the resources of the source the jobs are read from, such as an
+     * opened archive.
      */
-    private File[] getSubDirectories(String parent) {
-
-        File parentDirectory = new File(parent);
+    @Override
+    public void close() throws IOException {
 
-        // Iterate through all team folders
-        File[] directories = parentDirectory.listFiles(new FilenameFilter() {
-            @Override
-            public boolean accept(File parent, String child) {
-                return new File(parent, child).isDirectory();
-            }
-        });
+        source.close();
 
-        return directories;
     }
 
 }
@@ -0,0 +1,72 @@
+package models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+/**
+ * A place the jobs of a Hudson instance can be read from: the live home
+ * directory or a backup of it.
+ */
+public interface HudsonHomeSource extends Closeable {
+
+    /**
+     * Creates a Job object for every job of the Hudson instance and hands it
+     * to an action.
+     *
+     * @param action the action to be performed on each job
+     * @throws IOException if the source can not be read
+     */
+    void forEachJob(Consumer<Job> action) throws IOException;
+
+    /**
+     * Returns a view of the source as a directory tree, for the reports that
+     * need to visit the jobs in any order.
+     *
+     * @return the directory view or <code>null</code> if the source can only
+     * be read sequentially
+     * @throws IOException if the source can not be opened
+     */
+    default DirectorySource getDirectorySource() throws IOException {
+        return null;
+    }
+
+    /**
+     * Releases the resources held by the source. Jobs created by the source
+     * may not be able to read their files once it is closed.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Returns the source for a location, depending on its extension: a zip
+     * archive for <code>.zip</code>, a tar archive for <code>.tar</code>,
+     * <code>.tar.gz</code> and <code>.tgz</code>, and a directory otherwise.
+     *
+     * @param location path of a Hudson home directory or of a backup of it
+     * @return the source to read the jobs from
+     */
+    static HudsonHomeSource forLocation(String location) {
+
+        if (location == null) {
+            throw new IllegalArgumentException("location can not be null");
+        }
+
+        Path path = Paths.get(location);
+        String name = location.toLowerCase();
+
+        if (name.endsWith(".zip")) {
+            return new ZipSource(path);
+        }
+
+        if (name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            return new TarSource(path);
+        }
+
+        return new DirectorySource(path);
+    }
+
+}
@@ -6,9 +6,21 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -24,13 +36,25 @@ import org.xml.sax.SAXException;
 public class Job {
 
     private String teamName;
-    private File directory;
+    private String jobName;
+    private Path directory;
     private Long diskSpaceSize;
     private String createdBy;
     private String creationDate;
     private Boolean disabled;
     private String description;
     private String lastRunDate;
+    private String timerTriggerSpec;
+    private String scmTriggerSpec;
+    private Path latestBuildDirectory;
+    private boolean latestBuildDirectoryKnown = false;
+    private Boolean jobInExecution;
+    private boolean jobInExecutionKnown = false;
+    private BuildHistory buildHistory;
+    private List<BuildRecord> buildRecords;
+    private int[] runmapBuildNumbers;
+    private long[] runmapBuildTimestamps;
+    private Map<String, Long> unnumberedBuildDirectories;
     private boolean hasConfigFile = false;
 
     /**
@@ -41,18 +65,67 @@ public class Job {
      */
     public Job(String jobDirectory) {
 
+        this(jobDirectory == null ? null : Paths.get(jobDirectory));
+
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param jobDirectory root directory of a job, in any file system
+     *
+     */
+    public Job(Path jobDirectory) {
+
         if (jobDirectory == null) {
             throw new IllegalArgumentException("jobDirectory can not be null");
         }
 
-        directory = new File(jobDirectory);
+        directory = jobDirectory;
 
-        if (!directory.exists()) {
+        if (!Files.exists(directory)) {
             throw new IllegalArgumentException(directory + " doesnt exist");
         }
 
-        parseConfigFile();
-        parseRunmapFile();
+        parseConfigFile(getConfigurationFile());
+        parseRunmapFile(getRunmapFile());
+
+    }
+
+    /**
+     * Constructor for jobs whose files are not read from the job directory but
+     * handed to {@link #parseConfigFile(InputStream)} and
+     * {@link #parseRunmapFile(InputStream)} by a HudsonHomeSource. The
+     * directory is only used for its name.
+     *
+     * @param jobDirectory path of the root directory of the job
+     * @param teamName the name of the team the job belongs to
+     *
+     */
+    Job(Path jobDirectory, String teamName) {
+
+        this.directory = jobDirectory;
+        this.teamName = teamName;
+
+    }
+
+    /**
+     * Constructor for jobs whose directory has already been listed by a
+     * HudsonHomeSource, which tells which of the job files exist so that they
+     * are not looked up again.
+     *
+     * @param jobDirectory root directory of a job
+     * @param teamName the name of the team the job belongs to
+     * @param hasConfigFile true if the job directory has a config.xml file
+     * @param hasRunmapFile true if the builds directory has a _runmap.xml file
+     *
+     */
+    Job(Path jobDirectory, String teamName, boolean hasConfigFile, boolean hasRunmapFile) {
+
+        this(jobDirectory, teamName);
+
+        parseConfigFile(hasConfigFile ? directory.resolve("config.xml") : null);
+        parseRunmapFile(hasRunmapFile ? directory.resolve("builds").resolve("_runmap.xml") : null);
 
     }
 
@@ -74,14 +147,14 @@ public class Job {
     }
 
     /**
-     * @return File object that represents the configuration file of a job or
+     * @return Path that represents the configuration file of a job or
      * <code>null</code> if it doesn't have a configuration file
      *
      */
-    private File getConfigurationFile() {
+    private Path getConfigurationFile() {
 
-        File configFile = new File(directory, "config.xml");
-        if (configFile.exists()) {
+        Path configFile = directory.resolve("config.xml");
+        if (Files.exists(configFile)) {
             return configFile;
         }
 
@@ -89,11 +162,31 @@ public class Job {
     }
 
     /**
-     * @return the name of the job
+     * @return the root directory of the job
+     *
+     */
+    public Path getDirectory() {
+
+        return directory;
+    }
+
+    /**
+     * @return the full name of the job: the names of the folders it is
+     * nested in and its own, separated by <code>/</code>, such as
+     * <code>folder/job</code>
      *
      */
     public String getJobName() {
-        return directory.getName();
+
+        if (this.jobName != null) {
+
+            return jobName;
+
+        }
+
+        jobName = getJobNameFromDirectory();
+        return jobName;
+
     }
 
     /**
@@ -122,6 +215,26 @@ public class Job {
         return description;
     }
 
+    /**
+     * @return the cron spec of the timer trigger of the job or
+     * <code>null</code> if the job isn't built periodically.
+     *
+     */
+    public String getTimerTriggerSpec() {
+
+        return this.timerTriggerSpec;
+    }
+
+    /**
+     * @return the cron spec of the SCM polling trigger of the job or
+     * <code>null</code> if the job doesn't poll its SCM.
+     *
+     */
+    public String getScmTriggerSpec() {
+
+        return this.scmTriggerSpec;
+    }
+
     /**
      * @return the Hudson username who created the job.
      *
@@ -132,7 +245,7 @@ public class Job {
     }
 
     /**
-     * @return the disk space in bytes that the job folder takes.
+     * @return the disk space in kilobytes that the job folder takes.
      *
      */
     public Long getDiskSpaceSize() {
@@ -145,6 +258,252 @@ public class Job {
         return diskSpaceSize;
     }
 
+    /**
+     * Sets the disk space of the job when it is already known, so that it
+     * doesn't have to be computed again.
+     *
+     * @param diskSpaceSize the disk space in kilobytes that the job folder
+     * takes
+     */
+    void setDiskSpaceSize(long diskSpaceSize) {
+
+        this.diskSpaceSize = diskSpaceSize;
+    }
+
+    /**
+     * Sets the name of the team the job belongs to when it is already known
+     * from the location of the job.
+     *
+     * @param teamName the name of the team
+     */
+    void setTeamName(String teamName) {
+
+        this.teamName = teamName;
+    }
+
+    /**
+     * Sets the full name of the job when it is already known.
+     *
+     * @param jobName the names of the folders the job is nested in and its
+     * own, separated by <code>/</code>
+     */
+    void setJobName(String jobName) {
+
+        this.jobName = jobName;
+    }
+
+    /**
+     * Sets the directory of the latest build of the job when it is already
+     * known, so that the builds directory doesn't have to be listed again.
+     *
+     * @param latestBuildDirectory the directory of the latest build or
+     * <code>null</code> if the job has no builds
+     */
+    void setLatestBuildDirectory(Path latestBuildDirectory) {
+
+        this.latestBuildDirectory = latestBuildDirectory;
+        this.latestBuildDirectoryKnown = true;
+    }
+
+    /**
+     * @return the numbered builds of the job, with the size and timestamp of
+     * each one, from the newest to the oldest
+     *
+     */
+    public BuildHistory getBuildHistory() {
+
+        if (this.buildHistory == null) {
+
+            buildHistory = BuildHistory.read(directory.resolve("builds"));
+            buildHistory.setTimestampRefiner(this::setBuildTimestamps);
+        }
+
+        return buildHistory;
+    }
+
+    /**
+     * Sets the build history of the job when it is already known.
+     *
+     * @param buildHistory a sorted build history, timed by the last
+     * modification of the build directories
+     */
+    void setBuildHistory(BuildHistory buildHistory) {
+
+        this.buildHistory = buildHistory;
+        buildHistory.setTimestampRefiner(this::setBuildTimestamps);
+    }
+
+    /**
+     * Times the builds of a history with their runmap timestamp, or with the
+     * start time of their build.xml file when the runmap doesn't list them.
+     * The last modification of the build directory is left for the builds
+     * that have neither. Runs the first time the history is asked for a
+     * timestamp, so the build.xml files are only parsed when a report needs
+     * the time of the builds.
+     */
+    private void setBuildTimestamps(BuildHistory history) {
+
+        Map<Integer, Long> startTimes = new HashMap<>();
+        if (buildRecords != null) {
+            for (BuildRecord record : buildRecords) {
+                startTimes.put(record.getNumber(), record.getStartTime());
+            }
+        }
+
+        for (int i = 0; i < history.size(); i++) {
+
+            int number = history.getNumber(i);
+            int listed = runmapBuildNumbers == null ? -1 : Arrays.binarySearch(runmapBuildNumbers, number);
+
+            if (listed >= 0 && runmapBuildTimestamps[listed] >= 0) {
+                history.setTimestamp(i, runmapBuildTimestamps[listed]);
+                continue;
+            }
+
+            Long startTime = buildRecords != null ? startTimes.get(number) : readBuildStartTime(number);
+            if (startTime != null) {
+                history.setTimestamp(i, startTime);
+            }
+        }
+    }
+
+    /**
+     * @return the start time of a build read from its build.xml file or
+     * <code>null</code> if it has none
+     */
+    private Long readBuildStartTime(int number) {
+
+        Path buildFile = directory.resolve("builds").resolve(Integer.toString(number)).resolve("build.xml");
+
+        if (!Files.isRegularFile(buildFile)) {
+            return null;
+        }
+
+        try (InputStream input = Files.newInputStream(buildFile)) {
+
+            BuildRecord record = BuildRecord.parse(number, input);
+            return record == null ? null : record.getStartTime();
+
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return when and where each numbered build of the job ran, read from
+     * their build.xml files, in no particular order
+     *
+     */
+    public List<BuildRecord> getBuildRecords() {
+
+        if (this.buildRecords == null) {
+
+            buildRecords = BuildRecord.readAll(directory.resolve("builds"));
+        }
+
+        return buildRecords;
+    }
+
+    /**
+     * Sets the build records of the job when they are already known.
+     *
+     * @param buildRecords the records of the builds of the job
+     */
+    void setBuildRecords(List<BuildRecord> buildRecords) {
+
+        this.buildRecords = buildRecords;
+    }
+
+    /**
+     * @return the numbers of the builds listed in the _runmap file of the
+     * job, in ascending order, or <code>null</code> if the job has no
+     * readable runmap
+     *
+     */
+    public int[] getRunmapBuildNumbers() {
+
+        return runmapBuildNumbers;
+    }
+
+    /**
+     * @return the directories inside the builds directory of the job that are
+     * not named after a build number, such as leftovers of deleted or
+     * renamed builds, with the disk space in bytes each one takes
+     *
+     */
+    public Map<String, Long> getUnnumberedBuildDirectories() {
+
+        if (this.unnumberedBuildDirectories == null) {
+
+            unnumberedBuildDirectories = readUnnumberedBuildDirectories(directory.resolve("builds"));
+        }
+
+        return unnumberedBuildDirectories;
+    }
+
+    /**
+     * Sets the unnumbered build directories of the job when they are already
+     * known.
+     *
+     * @param unnumberedBuildDirectories the size in bytes of each directory
+     * by name
+     */
+    void setUnnumberedBuildDirectories(Map<String, Long> unnumberedBuildDirectories) {
+
+        this.unnumberedBuildDirectories = unnumberedBuildDirectories;
+    }
+
+    private static Map<String, Long> readUnnumberedBuildDirectories(Path buildsDirectory) {
+
+        Map<String, Long> directories = new TreeMap<>();
+
+        if (!Files.isDirectory(buildsDirectory)) {
+            return directories;
+        }
+
+        List<Path> linkTargets = new ArrayList<>();
+
+        try (DirectoryStream<Path> buildDirectories = Files.newDirectoryStream(buildsDirectory)) {
+
+            for (Path buildDirectory : buildDirectories) {
+
+                // the directory a numbered link points to holds a live build
+                if (BuildHistory.parseBuildNumber(buildDirectory) >= 0
+                        && Files.isSymbolicLink(buildDirectory)) {
+                    linkTargets.add(buildsDirectory.resolve(Files.readSymbolicLink(buildDirectory)).normalize());
+                }
+
+                if (BuildHistory.parseBuildNumber(buildDirectory) >= 0
+                        || !Files.isDirectory(buildDirectory, LinkOption.NOFOLLOW_LINKS)) {
+                    continue;
+                }
+
+                long[] bytes = new long[1];
+                Files.walkFileTree(buildDirectory, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        bytes[0] += attrs.size();
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+
+                directories.put(buildDirectory.getFileName().toString(), bytes[0]);
+            }
+
+            for (Path target : linkTargets) {
+                if (buildsDirectory.equals(target.getParent())) {
+                    directories.remove(target.getFileName().toString());
+                }
+            }
+
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+        }
+
+        return directories;
+    }
+
     /**
      * @return the creation date of the job in timestamp format
      *
@@ -211,29 +570,63 @@ public class Job {
      */
     public Boolean isJobInExecution() {
 
-        File latestBuildDir = getLatestBuildDirectory(directory);
+        if (jobInExecutionKnown) {
+            return jobInExecution;
+        }
+
+        Path latestBuildDir;
+        if (latestBuildDirectoryKnown) {
+            latestBuildDir = latestBuildDirectory;
+        } else {
+            File latestBuildFile = getLatestBuildDirectory(directory.toFile());
+            latestBuildDir = latestBuildFile == null ? null : latestBuildFile.toPath();
+        }
 
         if (latestBuildDir == null) {
             return null;
         }
 
-        File buildFile = new File(latestBuildDir, "build.xml");
+        Path buildFile = latestBuildDir.resolve("build.xml");
 
         List<String> lines;
         try {
-            lines = Files.readAllLines(buildFile.toPath());
-            for (String line : lines) {
-                if (line.contains("<duration>0</duration>")) {
-                    return true;
-                }
-            }
+            lines = Files.readAllLines(buildFile);
         } catch (IOException ex) {
             ex.printStackTrace();
             return null;
         }
 
+        return isBuildInExecution(lines);
+
+    }
+
+    /**
+     * @param buildFileLines the lines of the build.xml file of a build
+     * @return <code>true</code> if the build is in execution or
+     * <code>false</code> if it finished
+     */
+    static boolean isBuildInExecution(List<String> buildFileLines) {
+
+        for (String line : buildFileLines) {
+            if (line.contains("<duration>0</duration>")) {
+                return true;
+            }
+        }
+
         return false;
+    }
+
+    /**
+     * Sets whether the job is in execution when it is already known from the
+     * build file of its latest build.
+     *
+     * @param jobInExecution <code>true</code> if the job is in execution,
+     * <code>false</code> if it isn't or <code>null</code> if it is unknown
+     */
+    void setJobInExecution(Boolean jobInExecution) {
 
+        this.jobInExecution = jobInExecution;
+        this.jobInExecutionKnown = true;
     }
 
     /**
@@ -243,12 +636,12 @@ public class Job {
      */
     private String getTeamNameFromDirectory() {
 
-        File parentDirectory = directory.getParentFile();
-        File grandParentDirectory = parentDirectory.getParentFile();
+        Path parentDirectory = getTopLevelDirectory().getParent();
+        Path grandParentDirectory = parentDirectory.getParent();
 
-        if (grandParentDirectory.getParentFile().getName().equals("teams")) {
+        if (grandParentDirectory.getParent().getFileName().toString().equals("teams")) {
 
-            return grandParentDirectory.getName();
+            return grandParentDirectory.getFileName().toString();
 
         } else {
 
@@ -258,6 +651,62 @@ public class Job {
 
     }
 
+    /**
+     * @return the full name of the job using the job directory to figure it
+     * out: the folders are the jobs whose <code>jobs</code> directory
+     * contains it.
+     *
+     */
+    private String getJobNameFromDirectory() {
+
+        StringBuilder name = new StringBuilder(directory.getFileName().toString());
+
+        for (Path folder = getFolderDirectory(directory); folder != null; folder = getFolderDirectory(folder)) {
+            name.insert(0, folder.getFileName() + "/");
+        }
+
+        return name.toString();
+    }
+
+    /**
+     * @return the directory of the job at the top of the folders the job is
+     * nested in, or the job directory itself if it is not nested
+     *
+     */
+    private Path getTopLevelDirectory() {
+
+        Path topLevel = directory;
+
+        for (Path folder = getFolderDirectory(directory); folder != null; folder = getFolderDirectory(folder)) {
+            topLevel = folder;
+        }
+
+        return topLevel;
+    }
+
+    /**
+     * @return the directory of the folder job a job directory is nested in,
+     * that is the parent of its <code>jobs</code> directory when that one is
+     * itself in a <code>jobs</code> directory, or <code>null</code>
+     *
+     */
+    private static Path getFolderDirectory(Path jobDirectory) {
+
+        Path jobsDirectory = jobDirectory.getParent();
+        Path folder = jobsDirectory == null ? null : jobsDirectory.getParent();
+
+        if (folder == null || folder.getParent() == null || folder.getParent().getFileName() == null) {
+            return null;
+        }
+
+        if (!jobsDirectory.getFileName().toString().equals("jobs")
+                || !folder.getParent().getFileName().toString().equals("jobs")) {
+            return null;
+        }
+
+        return folder;
+    }
+
     public File getLatestBuildDirectory(File jobDirectory) {
 
         File parent = new File(jobDirectory, "builds");
@@ -313,24 +762,45 @@ public class Job {
 
     /**
      * Parses the job configuration file and sets the attributes: description ,
-     * createdBy , creationDate and disabled
+     * createdBy , creationDate, disabled and the trigger specs
      *
+     * @param configurationFile the configuration file or <code>null</code>
+     * if the job has none
      * @exception Exception if there is a problem parsing the configuration file
      */
-    private void parseConfigFile() {
-
-        File configurationFile = getConfigurationFile();
+    private void parseConfigFile(Path configurationFile) {
 
         if (configurationFile == null) {
             this.hasConfigFile=false;
             return;
         }
 
-        String configFile = configurationFile.getAbsolutePath();
+        try (InputStream input = Files.newInputStream(configurationFile)) {
+
+            parseConfigFile(input);
+
+        } catch (IOException ex) {
+
+            System.out.println(ex.getMessage());
+
+        }
+
+    }
+
+    /**
+     * Parses the content of a job configuration file and sets the attributes:
+     * description , createdBy , creationDate, disabled and the trigger specs
+     *
+     * @param input the content of the configuration file
+     */
+    void parseConfigFile(InputStream input) {
+
+        this.hasConfigFile = true;
+
         DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
         try {
             DocumentBuilder builder = factory.newDocumentBuilder();
-            Document document = builder.parse(new File(configFile));
+            Document document = builder.parse(input);
             Element root = document.getDocumentElement();
 
             NodeList rootNodes = root.getChildNodes();
@@ -368,6 +838,12 @@ public class Job {
 
                     }
 
+                    if (name.equals("triggers")) {
+
+                        parseTriggers(rootNodes.item(i));
+
+                    }
+
                 }
             }
 
@@ -380,16 +856,58 @@ public class Job {
     }
 
     /**
-     * Returns a File that represents the the runmap xml of the job
+     * Sets the attributes timerTriggerSpec and scmTriggerSpec from the
+     * triggers element of the configuration file
+     *
+     * @param triggers the triggers element
+     */
+    private void parseTriggers(Node triggers) {
+
+        NodeList triggerNodes = triggers.getChildNodes();
+
+        for (int i = 0; i < triggerNodes.getLength(); i++) {
+
+            Node trigger = triggerNodes.item(i);
+
+            if (trigger.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+
+            String spec = null;
+            NodeList specNodes = trigger.getChildNodes();
+            for (int j = 0; j < specNodes.getLength(); j++) {
+                if (specNodes.item(j).getNodeType() == Node.ELEMENT_NODE
+                        && specNodes.item(j).getNodeName().equals("spec")) {
+                    spec = specNodes.item(j).getTextContent();
+                }
+            }
+
+            if (trigger.getNodeName().endsWith("TimerTrigger")) {
+
+                this.timerTriggerSpec = spec;
+
+            }
+
+            if (trigger.getNodeName().endsWith("SCMTrigger")) {
+
+                this.scmTriggerSpec = spec;
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Returns a Path that represents the the runmap xml of the job
      *
-     * @return a File representing the runmap
+     * @return a Path representing the runmap
      */
-    private File getRunmapFile() {
+    private Path getRunmapFile() {
 
-        File buildsFolder = new File(directory, "builds");
-        File runmapFile = new File(buildsFolder, "_runmap.xml");
+        Path runmapFile = directory.resolve("builds").resolve("_runmap.xml");
 
-        if (runmapFile.exists()) {
+        if (Files.exists(runmapFile)) {
             return runmapFile;
         }
 
@@ -399,21 +917,62 @@ public class Job {
     /**
      * Parses the job _runmap file and sets the attributes lastRunDate
      *
+     * @param runmapFile the runmap file or <code>null</code> if the job has
+     * none
      * @exception Exception if there is a problem parsing the runmap file
      */
-    private void parseRunmapFile() {
-
-        File runmapFile = getRunmapFile();
+    private void parseRunmapFile(Path runmapFile) {
 
         if (runmapFile == null) {
             return;
         }
 
-        String runmapFileStr = runmapFile.getAbsolutePath();
+        try (InputStream input = Files.newInputStream(runmapFile)) {
+
+            parseRunmapFile(input);
+
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            System.out.println(ex);
+        }
+
+    }
+
+    /**
+     * @return the value of a child element of a build element of the runmap,
+     * such as its number or timestamp, or -1 if it has none
+     */
+    private static long parseRunmapBuildValue(Node build, String name) {
+
+        NodeList buildNodes = build.getChildNodes();
+
+        for (int i = 0; i < buildNodes.getLength(); i++) {
+
+            if (buildNodes.item(i).getNodeType() == Node.ELEMENT_NODE
+                    && buildNodes.item(i).getNodeName().equals(name)) {
+                try {
+                    return Long.parseLong(buildNodes.item(i).getTextContent().trim());
+                } catch (NumberFormatException nfe) {
+                    return -1;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Parses the content of a job _runmap file and sets the attributes
+     * lastRunDate, runmapBuildNumbers and runmapBuildTimestamps
+     *
+     * @param input the content of the runmap file
+     */
+    void parseRunmapFile(InputStream input) {
+
         DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
         try {
             DocumentBuilder builder = factory.newDocumentBuilder();
-            Document document = builder.parse(new File(runmapFileStr));
+            Document document = builder.parse(input);
             Element root = document.getDocumentElement();
 
             NodeList rootNodes = root.getChildNodes();
@@ -432,15 +991,39 @@ public class Job {
             NodeList buildNodes = rootNodes.item(buildNodesIndex).getChildNodes();
 
             int lastBuildIndex = -1;
+            // each build number packed with the index of its timestamp
+            long[] packed = new long[buildNodes.getLength()];
+            long[] listedTimestamps = new long[buildNodes.getLength()];
+            int numberCount = 0;
             for (int i = 0; i < buildNodes.getLength(); i++) {
 
                 if (buildNodes.item(i).getNodeType() == Node.ELEMENT_NODE) {
                     lastBuildIndex = i;
 
+                    long number = parseRunmapBuildValue(buildNodes.item(i), "number");
+                    if (number >= 0 && number <= Integer.MAX_VALUE) {
+                        listedTimestamps[numberCount] = parseRunmapBuildValue(buildNodes.item(i), "timestamp");
+                        packed[numberCount] = number << 32 | numberCount;
+                        numberCount++;
+                    }
+
                 }
 
             }
 
+            packed = Arrays.copyOf(packed, numberCount);
+            Arrays.sort(packed);
+
+            int[] numbers = new int[numberCount];
+            long[] timestamps = new long[numberCount];
+            for (int i = 0; i < numberCount; i++) {
+                numbers[i] = (int) (packed[i] >>> 32);
+                timestamps[i] = listedTimestamps[(int) packed[i]];
+            }
+
+            this.runmapBuildNumbers = numbers;
+            this.runmapBuildTimestamps = timestamps;
+
             NodeList lastBuildNodes = buildNodes.item(lastBuildIndex).getChildNodes();
 
             for (int i = 0; i < lastBuildNodes.getLength(); i++) {
@@ -475,7 +1058,7 @@ public class Job {
 
         String command = "du -h -k";
         ProcessBuilder pb = new ProcessBuilder(command.split(" "));
-        pb.directory(directory);
+        pb.directory(directory.toFile());
         try {
             Process p = pb.start();
             InputStream is = p.getInputStream();
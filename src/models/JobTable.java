@@ -0,0 +1,470 @@
+package models;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+
+/**
+ * Columnar representation of the jobs of a Hudson instance.
+ *
+ * Every attribute of a job is stored in its own primitive column indexed by
+ * row number: sizes and dates in <code>long</code> arrays, flags in bitsets
+ * and team and owner names dictionary encoded. Descriptions are written to a
+ * temporary file as jobs are added and only read back when requested. Reports
+ * read them in row order, so they are read with a buffered stream that only
+ * moves forward, and is reopened when a report starts over.
+ */
+public class JobTable implements Closeable {
+
+    /**
+     * Value of the date columns for jobs whose date is unknown.
+     */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final long NO_DESCRIPTION = -1;
+    private static final int NO_OWNER = -1;
+
+    private int size;
+    private String[] jobNames = new String[INITIAL_CAPACITY];
+    private int[] teamIds = new int[INITIAL_CAPACITY];
+    private int[] ownerIds = new int[INITIAL_CAPACITY];
+    private long[] diskSpaceSizes = new long[INITIAL_CAPACITY];
+    private long[] creationDates = new long[INITIAL_CAPACITY];
+    private long[] lastRunDates = new long[INITIAL_CAPACITY];
+    private long[] descriptionOffsets = new long[INITIAL_CAPACITY];
+
+    private final BitSet hasConfigFile = new BitSet();
+    private final BitSet disabledKnown = new BitSet();
+    private final BitSet disabled = new BitSet();
+    private final BitSet runningKnown = new BitSet();
+    private final BitSet running = new BitSet();
+
+    private final Dictionary teams = new Dictionary();
+    private final Dictionary owners = new Dictionary();
+
+    private File descriptionsFile;
+    private DataOutputStream descriptionsOutput;
+    private long descriptionsLength;
+    private DataInputStream descriptionsInput;
+    private long descriptionsInputPosition;
+
+    /**
+     * Appends a job to the table. The job object is not referenced by the
+     * table once this method returns.
+     *
+     * @param job the job to add
+     * @return the row number assigned to the job
+     */
+    public int add(Job job) {
+
+        if (job == null) {
+            throw new IllegalArgumentException("job can not be null");
+        }
+
+        ensureCapacity(size + 1);
+        int row = size;
+
+        jobNames[row] = job.getJobName();
+        teamIds[row] = teams.encode(job.getTeamName());
+
+        String owner = job.getCreatedBy();
+        ownerIds[row] = owner == null ? NO_OWNER : owners.encode(owner);
+
+        diskSpaceSizes[row] = job.getDiskSpaceSize();
+
+        Date creationDate = job.getCreationDate();
+        creationDates[row] = creationDate == null ? NO_DATE : creationDate.getTime();
+
+        Date lastRunDate;
+        try {
+            lastRunDate = job.getLastRunDate();
+        } catch (NumberFormatException nfe) {
+            lastRunDate = null;
+        }
+        lastRunDates[row] = lastRunDate == null ? NO_DATE : lastRunDate.getTime();
+
+        hasConfigFile.set(row, job.hasConfigFile());
+
+        Boolean jobDisabled = job.isDisabled();
+        if (jobDisabled != null) {
+            disabledKnown.set(row);
+            disabled.set(row, jobDisabled);
+        }
+
+        Boolean inExecution = job.isJobInExecution();
+        if (inExecution != null) {
+            runningKnown.set(row);
+            running.set(row, inExecution);
+        }
+
+        descriptionOffsets[row] = writeDescription(job.getDescription());
+
+        size++;
+        return row;
+    }
+
+    /**
+     * @return the number of jobs in the table
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * @param row a row number
+     * @return the name of the job
+     */
+    public String getJobName(int row) {
+
+        checkRow(row);
+        return jobNames[row];
+    }
+
+    /**
+     * @param row a row number
+     * @return the name of the team the job belongs to
+     */
+    public String getTeamName(int row) {
+
+        checkRow(row);
+        return teams.decode(teamIds[row]);
+    }
+
+    /**
+     * @param row a row number
+     * @return the dictionary id of the team the job belongs to, between 0 and
+     * {@link #getTeamCount()} - 1
+     */
+    public int getTeamId(int row) {
+
+        checkRow(row);
+        return teamIds[row];
+    }
+
+    /**
+     * @return the number of distinct teams in the table
+     */
+    public int getTeamCount() {
+
+        return teams.size();
+    }
+
+    /**
+     * @param teamId a team dictionary id
+     * @return the name of the team
+     */
+    public String getTeamNameById(int teamId) {
+
+        return teams.decode(teamId);
+    }
+
+    /**
+     * @param row a row number
+     * @return the Hudson username who created the job or <code>null</code>
+     */
+    public String getCreatedBy(int row) {
+
+        checkRow(row);
+        return ownerIds[row] == NO_OWNER ? null : owners.decode(ownerIds[row]);
+    }
+
+    /**
+     * Reads the description of a job back from the descriptions file.
+     *
+     * @param row a row number
+     * @return the description of the job or <code>null</code>
+     */
+    public String getDescription(int row) {
+
+        checkRow(row);
+
+        long offset = descriptionOffsets[row];
+        if (offset == NO_DESCRIPTION) {
+            return null;
+        }
+
+        try {
+
+            descriptionsOutput.flush();
+
+            if (descriptionsInput == null || offset < descriptionsInputPosition) {
+                closeDescriptionsInput();
+                descriptionsInput = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(descriptionsFile)));
+            }
+
+            descriptionsInput.skipNBytes(offset - descriptionsInputPosition);
+            byte[] bytes = new byte[descriptionsInput.readInt()];
+            descriptionsInput.readFully(bytes);
+            descriptionsInputPosition = offset + Integer.BYTES + bytes.length;
+
+            return new String(bytes, StandardCharsets.UTF_8);
+
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+            closeDescriptionsInput();
+            return null;
+        }
+    }
+
+    /**
+     * @param row a row number
+     * @return the disk space in kilobytes that the job folder takes
+     */
+    public long getDiskSpaceSize(int row) {
+
+        checkRow(row);
+        return diskSpaceSizes[row];
+    }
+
+    /**
+     * Returns the disk space that each job takes without the jobs nested in
+     * it. The size of a folder includes its nested jobs, which have rows of
+     * their own, so adding up these sizes counts every file once.
+     *
+     * @return the disk space in kilobytes of each row
+     */
+    public long[] getOwnDiskSpaceSizes() {
+
+        HashMap<String, Integer> rows = new HashMap<>();
+        for (int row = 0; row < size; row++) {
+            rows.put(teamIds[row] + "/" + jobNames[row], row);
+        }
+
+        long[] ownSizes = Arrays.copyOf(diskSpaceSizes, size);
+
+        for (int row = 0; row < size; row++) {
+
+            int slash = jobNames[row].lastIndexOf('/');
+            Integer folder = slash < 0 ? null : rows.get(teamIds[row] + "/" + jobNames[row].substring(0, slash));
+
+            if (folder != null) {
+                ownSizes[folder] -= diskSpaceSizes[row];
+            }
+        }
+
+        // sizes are rounded per job, and linked nested jobs may not be
+        // counted in their folder
+        for (int row = 0; row < size; row++) {
+            ownSizes[row] = Math.max(0, ownSizes[row]);
+        }
+
+        return ownSizes;
+    }
+
+    /**
+     * @param row a row number
+     * @return the creation date of the job in milliseconds since the epoch or
+     * {@link #NO_DATE} if it is unknown
+     */
+    public long getCreationTime(int row) {
+
+        checkRow(row);
+        return creationDates[row];
+    }
+
+    /**
+     * @param row a row number
+     * @return the creation date of the job or <code>null</code> if it is
+     * unknown
+     */
+    public Date getCreationDate(int row) {
+
+        return toDate(getCreationTime(row));
+    }
+
+    /**
+     * @param row a row number
+     * @return the last run date of the job in milliseconds since the epoch or
+     * {@link #NO_DATE} if the job never ran
+     */
+    public long getLastRunTime(int row) {
+
+        checkRow(row);
+        return lastRunDates[row];
+    }
+
+    /**
+     * @param row a row number
+     * @return the last run date of the job or <code>null</code> if the job
+     * never ran
+     */
+    public Date getLastRunDate(int row) {
+
+        return toDate(getLastRunTime(row));
+    }
+
+    /**
+     * @param row a row number
+     * @return true if the job has a configuration file or false if it does not
+     */
+    public boolean hasConfigFile(int row) {
+
+        checkRow(row);
+        return hasConfigFile.get(row);
+    }
+
+    /**
+     * @param row a row number
+     * @return availability of the job or <code>null</code> if it is unknown
+     */
+    public Boolean isDisabled(int row) {
+
+        checkRow(row);
+        return disabledKnown.get(row) ? disabled.get(row) : null;
+    }
+
+    /**
+     * @param row a row number
+     * @return <code>true</code> if the job was in execution when it was added,
+     * <code>false</code> if it wasn't or <code>null</code> if it is unknown
+     */
+    public Boolean isJobInExecution(int row) {
+
+        checkRow(row);
+        return runningKnown.get(row) ? running.get(row) : null;
+    }
+
+    /**
+     * Deletes the temporary file holding the descriptions.
+     */
+    @Override
+    public void close() throws IOException {
+
+        closeDescriptionsInput();
+
+        if (descriptionsOutput != null) {
+            descriptionsOutput.close();
+            descriptionsOutput = null;
+        }
+
+        if (descriptionsFile != null) {
+            descriptionsFile.delete();
+            descriptionsFile = null;
+        }
+    }
+
+    /**
+     * Appends a description to the descriptions file.
+     *
+     * @param description the description to store, may be <code>null</code>
+     * @return the offset of the description in the file or
+     * <code>NO_DESCRIPTION</code>
+     */
+    private long writeDescription(String description) {
+
+        if (description == null) {
+            return NO_DESCRIPTION;
+        }
+
+        try {
+            if (descriptionsOutput == null) {
+                descriptionsFile = File.createTempFile("hudson-descriptions", ".dat");
+                descriptionsFile.deleteOnExit();
+                descriptionsOutput = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(descriptionsFile)));
+            }
+
+            byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+            long offset = descriptionsLength;
+            descriptionsOutput.writeInt(bytes.length);
+            descriptionsOutput.write(bytes);
+            descriptionsLength += Integer.BYTES + bytes.length;
+            return offset;
+
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+            return NO_DESCRIPTION;
+        }
+    }
+
+    private void closeDescriptionsInput() {
+
+        try {
+            if (descriptionsInput != null) {
+                descriptionsInput.close();
+            }
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+        }
+
+        descriptionsInput = null;
+        descriptionsInputPosition = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+
+        if (capacity <= jobNames.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, jobNames.length * 2);
+
+        jobNames = Arrays.copyOf(jobNames, newCapacity);
+        teamIds = Arrays.copyOf(teamIds, newCapacity);
+        ownerIds = Arrays.copyOf(ownerIds, newCapacity);
+        diskSpaceSizes = Arrays.copyOf(diskSpaceSizes, newCapacity);
+        creationDates = Arrays.copyOf(creationDates, newCapacity);
+        lastRunDates = Arrays.copyOf(lastRunDates, newCapacity);
+        descriptionOffsets = Arrays.copyOf(descriptionOffsets, newCapacity);
+    }
+
+    private void checkRow(int row) {
+
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " not in table of size " + size);
+        }
+    }
+
+    private static Date toDate(long time) {
+
+        return time == NO_DATE ? null : new Date(time);
+    }
+
+    /**
+     * Maps repeated strings to dense integer ids so that each distinct value
+     * is stored only once.
+     */
+    private static class Dictionary {
+
+        private final HashMap<String, Integer> ids = new HashMap<>();
+        private final ArrayList<String> values = new ArrayList<>();
+
+        int encode(String value) {
+
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+
+            return id;
+        }
+
+        String decode(int id) {
+
+            return values.get(id);
+        }
+
+        int size() {
+
+            return values.size();
+        }
+    }
+
+}
@@ -0,0 +1,473 @@
+package models;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import utils.TarReader;
+
+/**
+ * Reads the jobs of a tar backup of a Hudson home directory, optionally
+ * gzipped, in a single sequential pass over the archive.
+ *
+ * config.xml, _runmap.xml and build.xml entries are parsed as they stream
+ * past and sizes are taken from the entry headers, so nothing is extracted.
+ * Archivers write the entries of a directory together, so a job is handed to
+ * the action as soon as an entry outside its directory arrives, nested jobs
+ * before their folder, and only the jobs being read are kept in memory.
+ */
+public class TarSource implements HudsonHomeSource {
+
+    private final Path archive;
+
+    /**
+     * Constructor.
+     *
+     * @param archive path of the tar, tar.gz or tgz archive
+     *
+     */
+    public TarSource(Path archive) {
+
+        this.archive = archive;
+
+    }
+
+    @Override
+    public void forEachJob(Consumer<Job> action) throws IOException {
+
+        // the job being read and the folders it is nested in, innermost first
+        ArrayDeque<TarJob> jobs = new ArrayDeque<>();
+        List<String> home = null;
+
+        try (InputStream input = open()) {
+
+            TarReader tar = new TarReader(input);
+            TarReader.Entry entry;
+
+            while ((entry = tar.getNextEntry()) != null) {
+
+                List<String> names = splitName(entry.getName());
+
+                if (home == null) {
+                    home = findHome(names);
+                }
+
+                if (home == null || names.size() <= home.size() || !names.subList(0, home.size()).equals(home)) {
+                    continue;
+                }
+
+                names = names.subList(home.size(), names.size());
+
+                while (!jobs.isEmpty() && !jobs.peek().contains(names)) {
+                    action.accept(jobs.pop().toJob());
+                }
+
+                readEntry(tar, entry, names, jobs);
+            }
+
+        }
+
+        while (!jobs.isEmpty()) {
+            action.accept(jobs.pop().toJob());
+        }
+
+    }
+
+    private InputStream open() throws IOException {
+
+        InputStream input = new BufferedInputStream(Files.newInputStream(archive));
+        String name = archive.getFileName().toString().toLowerCase();
+
+        if (name.endsWith(".gz") || name.endsWith(".tgz")) {
+            return new GZIPInputStream(input);
+        }
+
+        return input;
+    }
+
+    /**
+     * Adds the data of an entry to the job it belongs to, if any.
+     *
+     * @param names the path of the entry relative to the Hudson home
+     */
+    private void readEntry(TarReader tar, TarReader.Entry entry, List<String> names, ArrayDeque<TarJob> jobs)
+            throws IOException {
+
+        TarJob tarJob = getJob(names, jobs);
+
+        if (tarJob == null) {
+            return;
+        }
+
+        List<String> rest = names.subList(tarJob.depth, names.size());
+
+        if (rest.isEmpty()) {
+            return;
+        }
+
+        if (entry.isSymbolicLink() && rest.size() == 2 && rest.get(0).equals("builds")) {
+            tarJob.addLinkedBuild(rest.get(1), entry.getLinkName());
+            return;
+        }
+
+        int build = -1;
+        BuildDirectory unnumberedBuild = null;
+        if (rest.size() >= 2 && rest.get(0).equals("builds")) {
+            build = tarJob.getBuild(rest.get(1), entry.getLastModified(), rest.size() == 2 && entry.isDirectory());
+
+            if (build < 0 && (rest.size() > 2 || entry.isDirectory())) {
+                unnumberedBuild = tarJob.getUnnumberedBuild(rest.get(1), entry.getLastModified(), rest.size() == 2);
+            }
+        }
+
+        if (!entry.isFile()) {
+            return;
+        }
+
+        for (TarJob job = tarJob; job != null; job = job.folder) {
+            job.sizeInBytes += entry.getSize();
+        }
+
+        if (build >= 0 && rest.size() > 2) {
+            tarJob.builds.addToSize(build, entry.getSize());
+        } else if (unnumberedBuild != null) {
+            unnumberedBuild.bytes += entry.getSize();
+        }
+
+        if (rest.size() == 1 && rest.get(0).equals("config.xml")) {
+
+            tarJob.job.parseConfigFile(tar.getEntryStream());
+
+        } else if (rest.size() == 2 && rest.get(0).equals("builds") && rest.get(1).equals("_runmap.xml")) {
+
+            tarJob.job.parseRunmapFile(tar.getEntryStream());
+
+        } else if ((build >= 0 || unnumberedBuild != null) && rest.size() == 3 && rest.get(2).equals("build.xml")) {
+
+            byte[] buildFile = readAll(tar.getEntryStream());
+
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new ByteArrayInputStream(buildFile), StandardCharsets.UTF_8));
+            boolean inExecution = Job.isBuildInExecution(reader.lines().collect(Collectors.toList()));
+
+            if (build >= 0) {
+
+                int number = Integer.parseInt(rest.get(1));
+                tarJob.setBuildInExecution(number, inExecution);
+
+                BuildRecord record = BuildRecord.parse(number, new ByteArrayInputStream(buildFile));
+                if (record != null) {
+                    tarJob.buildRecords.add(record);
+                }
+
+            } else {
+
+                // kept until a numbered link is found to point to it
+                unnumberedBuild.hasBuildFile = true;
+                unnumberedBuild.inExecution = inExecution;
+                unnumberedBuild.record = BuildRecord.parse(-1, new ByteArrayInputStream(buildFile));
+
+            }
+
+        }
+
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, read);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the innermost job an entry belongs to, creating it and the
+     * folder jobs it is nested in when they are first seen and pushing them on
+     * the jobs being read.
+     *
+     * @param names the path of the entry relative to the Hudson home
+     * @param jobs the jobs being read, innermost first
+     * @return the job or <code>null</code> if the entry is not inside a job
+     */
+    private TarJob getJob(List<String> names, ArrayDeque<TarJob> jobs) {
+
+        int depth;
+        String teamName;
+
+        if (names.size() >= 4 && names.get(0).equals("teams") && names.get(2).equals("jobs")) {
+            depth = 4;
+            teamName = names.get(1);
+        } else if (names.size() >= 2 && names.get(0).equals("jobs")) {
+            depth = 2;
+            teamName = "public";
+        } else {
+            return null;
+        }
+
+        TarJob tarJob = getJob(names.subList(0, depth), teamName, null, jobs);
+
+        for (int nesting = 0; nesting < Hudson.MAX_FOLDER_NESTING && names.size() >= depth + 2
+                && names.get(depth).equals("jobs"); nesting++) {
+            depth += 2;
+            tarJob = getJob(names.subList(0, depth), teamName, tarJob, jobs);
+        }
+
+        return tarJob;
+    }
+
+    private TarJob getJob(List<String> jobNames, String teamName, TarJob folder, ArrayDeque<TarJob> jobs) {
+
+        for (TarJob tarJob : jobs) {
+            if (tarJob.names.equals(jobNames)) {
+                return tarJob;
+            }
+        }
+
+        Path directory = archive.resolve(String.join("/", jobNames));
+        Job job = new Job(directory, teamName);
+        String name = jobNames.get(jobNames.size() - 1);
+        job.setJobName(folder == null ? name : folder.job.getJobName() + "/" + name);
+
+        TarJob tarJob = new TarJob(job, folder, jobNames);
+        jobs.push(tarJob);
+
+        return tarJob;
+    }
+
+    /**
+     * Returns the path of the Hudson home inside the archive: its root or its
+     * top level directory, whichever holds the first
+     * <code>teams/&lt;team&gt;/jobs</code> or <code>jobs/&lt;job&gt;</code>
+     * of an entry, as {@link ZipSource#getHome()} does. Deeper
+     * <code>jobs</code> directories, such as the job config history of a
+     * plugin, don't tell where the home is.
+     *
+     * @return the names of the home path or <code>null</code> if the entry
+     * doesn't tell
+     */
+    private static List<String> findHome(List<String> names) {
+
+        for (int i = 0; i < Math.min(2, names.size()); i++) {
+
+            if (names.get(i).equals("teams") && i + 2 < names.size() && names.get(i + 2).equals("jobs")) {
+                return new ArrayList<>(names.subList(0, i));
+            }
+
+            if (names.get(i).equals("jobs") && i + 1 < names.size()) {
+                return new ArrayList<>(names.subList(0, i));
+            }
+        }
+
+        return null;
+    }
+
+    private static List<String> splitName(String name) {
+
+        return Arrays.stream(name.split("/")).filter(part -> !part.isEmpty() && !part.equals("."))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Job being read from the archive, along with the data collected from its
+     * entries.
+     */
+    private static class TarJob {
+
+        final Job job;
+        final TarJob folder;
+        final List<String> names;
+        final int depth;
+        final BuildHistory builds = new BuildHistory();
+        final Map<Integer, Integer> buildIndexes = new HashMap<>();
+        final List<BuildRecord> buildRecords = new ArrayList<>();
+        final Map<String, BuildDirectory> unnumberedBuilds = new TreeMap<>();
+        final Map<Integer, String> linkedBuilds = new TreeMap<>();
+        long sizeInBytes;
+        int latestBuild = -1;
+        int latestBuildFile = -1;
+        boolean latestBuildInExecution;
+
+        TarJob(Job job, TarJob folder, List<String> names) {
+            this.job = job;
+            this.folder = folder;
+            this.names = new ArrayList<>(names);
+            this.depth = names.size();
+        }
+
+        /**
+         * @return true if an entry is the job directory or is inside it
+         */
+        boolean contains(List<String> entryNames) {
+
+            return entryNames.size() >= names.size() && entryNames.subList(0, names.size()).equals(names);
+        }
+
+        /**
+         * Returns the index of a build in the build history, timed by the
+         * entry of its directory or else by the first of its entries.
+         *
+         * @return the index of the build or -1 if the directory is not named
+         * after a build number
+         */
+        int getBuild(String directoryName, long lastModified, boolean directoryEntry) {
+
+            int number;
+            try {
+                number = Integer.parseInt(directoryName);
+            } catch (NumberFormatException nfe) {
+                return -1;
+            }
+
+            Integer build = buildIndexes.get(number);
+
+            if (build == null) {
+                build = builds.addBuild(number, lastModified);
+                buildIndexes.put(number, build);
+                latestBuild = Math.max(latestBuild, number);
+            } else if (directoryEntry) {
+                builds.setTimestamp(build, lastModified);
+            }
+
+            return build;
+        }
+
+        BuildDirectory getUnnumberedBuild(String directoryName, long lastModified, boolean directoryEntry) {
+
+            BuildDirectory directory = unnumberedBuilds.get(directoryName);
+
+            if (directory == null) {
+                directory = new BuildDirectory(lastModified);
+                unnumberedBuilds.put(directoryName, directory);
+            } else if (directoryEntry) {
+                directory.lastModified = lastModified;
+            }
+
+            return directory;
+        }
+
+        /**
+         * Records a numbered link of the builds directory, such as the ones
+         * older Hudson versions create towards the build directories named
+         * after their timestamp. Only links to a sibling directory are
+         * followed.
+         */
+        void addLinkedBuild(String linkName, String target) {
+
+            int number;
+            try {
+                number = Integer.parseInt(linkName);
+            } catch (NumberFormatException nfe) {
+                return;
+            }
+
+            List<String> targetNames = splitName(target);
+
+            if (targetNames.size() == 1 && !targetNames.get(0).equals("..")) {
+                linkedBuilds.put(number, targetNames.get(0));
+            }
+        }
+
+        /**
+         * Adds the builds reached through numbered links to the build
+         * history, with the data of the directory they point to, which is
+         * then no longer an unnumbered leftover.
+         */
+        private void resolveLinkedBuilds() {
+
+            List<String> linkTargets = new ArrayList<>();
+
+            for (Map.Entry<Integer, String> link : linkedBuilds.entrySet()) {
+
+                int number = link.getKey();
+                BuildDirectory target = unnumberedBuilds.get(link.getValue());
+
+                if (target == null || buildIndexes.containsKey(number)) {
+                    continue;
+                }
+
+                int build = builds.addBuild(number, target.lastModified);
+                builds.addToSize(build, target.bytes);
+                buildIndexes.put(number, build);
+                latestBuild = Math.max(latestBuild, number);
+                linkTargets.add(link.getValue());
+
+                if (target.hasBuildFile) {
+                    setBuildInExecution(number, target.inExecution);
+                }
+
+                if (target.record != null) {
+                    buildRecords.add(new BuildRecord(number, target.record.getBuiltOn(), target.record.getStartTime(),
+                            target.record.getDuration()));
+                }
+            }
+
+            unnumberedBuilds.keySet().removeAll(linkTargets);
+        }
+
+        void setBuildInExecution(int number, boolean inExecution) {
+
+            if (number > latestBuildFile) {
+                latestBuildFile = number;
+                latestBuildInExecution = inExecution;
+            }
+        }
+
+        Job toJob() {
+
+            resolveLinkedBuilds();
+
+            job.setDiskSpaceSize((sizeInBytes + 1023) / 1024);
+
+            builds.sort();
+            job.setBuildRecords(buildRecords);
+            job.setBuildHistory(builds);
+            Map<String, Long> unnumberedBuildSizes = new TreeMap<>();
+            unnumberedBuilds.forEach((name, directory) -> unnumberedBuildSizes.put(name, directory.bytes));
+            job.setUnnumberedBuildDirectories(unnumberedBuildSizes);
+
+            job.setJobInExecution(latestBuild >= 0 && latestBuildFile == latestBuild ? latestBuildInExecution : null);
+
+            return job;
+        }
+    }
+
+    /**
+     * A directory of the builds directory not named after a build number,
+     * which is a build if a numbered link points to it.
+     */
+    private static class BuildDirectory {
+
+        long bytes;
+        long lastModified;
+        boolean hasBuildFile;
+        boolean inExecution;
+        BuildRecord record;
+
+        BuildDirectory(long lastModified) {
+            this.lastModified = lastModified;
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package models;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Reads the jobs of a zip backup of a Hudson home directory through the JDK
+ * zip file system, traversing it like a live home directory.
+ *
+ * The archive stays mounted until the source is closed, so the jobs can
+ * still read their files after the traversal.
+ */
+public class ZipSource implements HudsonHomeSource {
+
+    private final Path archive;
+    private FileSystem fileSystem;
+
+    /**
+     * Constructor.
+     *
+     * @param archive path of the zip archive
+     *
+     */
+    public ZipSource(Path archive) {
+
+        this.archive = archive;
+
+    }
+
+    @Override
+    public void forEachJob(Consumer<Job> action) throws IOException {
+
+        getDirectorySource().forEachJob(action);
+
+    }
+
+    @Override
+    public DirectorySource getDirectorySource() throws IOException {
+
+        return new DirectorySource(getHome());
+
+    }
+
+    /**
+     * Returns the Hudson home directory inside the archive: its root or, when
+     * the root holds neither <code>teams</code> nor <code>jobs</code>, its
+     * only top level directory.
+     *
+     * @return the home directory in the zip file system
+     * @throws IOException if the archive can not be opened
+     */
+    public Path getHome() throws IOException {
+
+        if (fileSystem == null) {
+            fileSystem = FileSystems.newFileSystem(archive, (ClassLoader) null);
+        }
+
+        Path root = fileSystem.getPath("/");
+
+        if (Files.isDirectory(root.resolve("teams")) || Files.isDirectory(root.resolve("jobs"))) {
+            return root;
+        }
+
+        Path home = null;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root)) {
+            for (Path entry : entries) {
+                if (home != null || !Files.isDirectory(entry)) {
+                    return root;
+                }
+                home = entry;
+            }
+        }
+
+        return home == null ? root : home;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        if (fileSystem != null) {
+            fileSystem.close();
+            fileSystem = null;
+        }
+
+    }
+
+}
@@ -0,0 +1,168 @@
+package reporter;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import models.BuildHistory;
+import models.Job;
+
+/**
+ * Finds the build data of each job that Hudson no longer knows about, and
+ * the disk space that deleting it would reclaim:
+ * <ul>
+ * <li>build directories that the _runmap file doesn't list</li>
+ * <li>_runmap entries whose build directory is missing</li>
+ * <li>directories of the builds directory not named after a build number,
+ * such as <code>-</code> named leftovers</li>
+ * <li>jobs without a config.xml file</li>
+ * </ul>
+ *
+ * The build numbers found on disk and the ones listed in the runmap are
+ * compared as two sorted int arrays in a single merge pass. Jobs without a
+ * readable runmap are not reconciled, since there is nothing to compare the
+ * directories with.
+ */
+public class BuildConsistencyChecker {
+
+	/**
+	 * Kinds of inconsistency reported.
+	 */
+	public enum Issue {
+		ORPHAN_BUILD_DIRECTORY, MISSING_BUILD_DIRECTORY, UNNUMBERED_BUILD_DIRECTORY, NO_CONFIG_FILE
+	}
+
+	private final List<String> findings = new ArrayList<>();
+	private final List<String[]> jobsWithoutConfigFile = new ArrayList<>();
+	private final List<Long> jobsWithoutConfigFileBytes = new ArrayList<>();
+	private final Map<String, Long> nestedJobBytes = new HashMap<>();
+	private final long[] issueCounts = new long[Issue.values().length];
+	private final long[] issueBytes = new long[Issue.values().length];
+
+	/**
+	 * Reconciles the runmap of a job with its build directories.
+	 *
+	 * @param job
+	 *            a Job object
+	 */
+	public void addJob(Job job) {
+
+		String team = job.getTeamName();
+		String name = job.getJobName();
+
+		Long sizeKB = job.getDiskSpaceSize();
+		long bytes = sizeKB == null ? 0 : sizeKB * 1024;
+
+		// the size of a folder includes the jobs nested in it, which are not
+		// reclaimed with it
+		Path folder = job.getDirectory().getParent().getParent();
+		if (folder != null) {
+			nestedJobBytes.merge(folder.toString(), bytes, Long::sum);
+		}
+
+		if (!job.hasConfigFile()) {
+			jobsWithoutConfigFile.add(new String[] { team, name, job.getDirectory().toString() });
+			jobsWithoutConfigFileBytes.add(bytes);
+		}
+
+		for (Map.Entry<String, Long> directory : job.getUnnumberedBuildDirectories().entrySet()) {
+			addFinding(team, name, Issue.UNNUMBERED_BUILD_DIRECTORY, directory.getKey(), directory.getValue());
+		}
+
+		int[] listed = job.getRunmapBuildNumbers();
+
+		if (listed == null) {
+			return;
+		}
+
+		BuildHistory history = job.getBuildHistory();
+
+		// the history is sorted by descending build number
+		int[] onDisk = new int[history.size()];
+		long[] sizes = new long[history.size()];
+		for (int i = 0; i < onDisk.length; i++) {
+			onDisk[i] = history.getNumber(onDisk.length - 1 - i);
+			sizes[i] = history.getSize(onDisk.length - 1 - i);
+		}
+
+		int i = 0;
+		int j = 0;
+
+		while (i < onDisk.length || j < listed.length) {
+
+			if (j == listed.length || (i < onDisk.length && onDisk[i] < listed[j])) {
+
+				addFinding(team, name, Issue.ORPHAN_BUILD_DIRECTORY, Integer.toString(onDisk[i]), sizes[i]);
+				i++;
+
+			} else if (i == onDisk.length || listed[j] < onDisk[i]) {
+
+				addFinding(team, name, Issue.MISSING_BUILD_DIRECTORY, Integer.toString(listed[j]), 0);
+				j++;
+
+			} else {
+
+				i++;
+				j++;
+
+			}
+		}
+
+	}
+
+	private void addFinding(String team, String name, Issue issue, String build, long bytes) {
+
+		issueCounts[issue.ordinal()]++;
+		issueBytes[issue.ordinal()] += bytes;
+
+		findings.add("'" + team + "','" + name + "','" + issue + "','" + build + "','" + (bytes + 1023) / 1024
+				+ "'\n");
+
+	}
+
+	/**
+	 * Writes a CSV file with a line per inconsistency found, with the disk
+	 * space deleting it would reclaim, and prints the totals per kind of
+	 * inconsistency
+	 *
+	 * @param csvFilePath
+	 *            the path of the CSV file
+	 */
+	public void writeToCSVFile(String csvFilePath) {
+
+		if (csvFilePath == null) {
+			return;
+		}
+
+		System.out.println("Generating report file : " + csvFilePath);
+
+		for (int i = 0; i < jobsWithoutConfigFile.size(); i++) {
+			String[] job = jobsWithoutConfigFile.get(i);
+			long bytes = jobsWithoutConfigFileBytes.get(i) - nestedJobBytes.getOrDefault(job[2], 0L);
+			addFinding(job[0], job[1], Issue.NO_CONFIG_FILE, "", Math.max(0, bytes));
+		}
+		jobsWithoutConfigFile.clear();
+		jobsWithoutConfigFileBytes.clear();
+
+		try (PrintWriter reportPW = new PrintWriter(new FileOutputStream(csvFilePath, false))) {
+
+			reportPW.write("'Team','Name','Issue','Build','Reclaimable KB'\n");
+			findings.forEach(reportPW::write);
+
+		} catch (FileNotFoundException ex) {
+			System.out.println(ex.getMessage());
+		}
+
+		for (Issue issue : Issue.values()) {
+			System.out.println(issue + " : " + issueCounts[issue.ordinal()] + " found, "
+					+ (issueBytes[issue.ordinal()] + 1023) / 1024 + " KB reclaimable");
+		}
+
+	}
+
+}
@@ -0,0 +1,460 @@
+package reporter;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.ToIntFunction;
+
+import models.DirectorySource;
+import models.Job;
+
+/**
+ * Estimates the disk space and the number of active jobs of each team from a
+ * sample of jobs and builds, with 95% confidence margins.
+ *
+ * Jobs are sampled per team (stratified sampling) and, inside each sampled
+ * job, only a fraction of the build directories is measured and scaled up
+ * to all its builds. The sample grows in rounds, doubling the fraction of
+ * jobs each time, until the relative margin of the total size reaches the
+ * target or the time budget is spent. Job sizes exclude the jobs nested in
+ * them, which are sampled on their own.
+ *
+ * The margins of the sizes add up the variance between the sampled jobs and
+ * the variance of the build sizes extrapolated inside each one, so they don't
+ * drop to zero when every job of a team is sampled but its builds are not.
+ */
+public class DiskUsageEstimator {
+
+	private static final String ALL_TEAMS = "(all)";
+	private static final double Z_95 = 1.96;
+
+	private final double jobFraction;
+	private final double buildFraction;
+	private final long timeBudgetMillis;
+	private final double targetRelativeError;
+	private final Random random;
+
+	private final Map<String, Stratum> strata = new TreeMap<>();
+	private long activeSince;
+	private int rounds;
+	private long elapsedMillis;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param jobFraction
+	 *            fraction of the jobs of each team sampled in the first round
+	 * @param buildFraction
+	 *            fraction of the builds measured in each sampled job
+	 * @param timeBudgetMillis
+	 *            time after which no more jobs are sampled
+	 * @param targetRelativeError
+	 *            relative margin of the total size at which sampling stops
+	 * @param seed
+	 *            seed of the random sample
+	 */
+	public DiskUsageEstimator(double jobFraction, double buildFraction, long timeBudgetMillis,
+			double targetRelativeError, long seed) {
+
+		if (jobFraction <= 0 || jobFraction > 1 || buildFraction <= 0 || buildFraction > 1) {
+			throw new IllegalArgumentException("sample fractions must be above 0 and at most 1");
+		}
+
+		this.jobFraction = jobFraction;
+		this.buildFraction = buildFraction;
+		this.timeBudgetMillis = timeBudgetMillis;
+		this.targetRelativeError = targetRelativeError;
+		this.random = new Random(seed);
+
+	}
+
+	/**
+	 * Samples the jobs of a Hudson home directory until the target error or
+	 * the time budget is reached.
+	 *
+	 * @param source
+	 *            the Hudson home directory
+	 * @throws IOException
+	 *             if the job directories can not be listed
+	 */
+	public void estimate(DirectorySource source) throws IOException {
+
+		long start = System.currentTimeMillis();
+		long deadline = start + timeBudgetMillis;
+
+		Calendar cal = Calendar.getInstance();
+		cal.add(Calendar.MONTH, -1);
+		activeSince = cal.getTimeInMillis();
+
+		source.forEachJobDirectory((team, jobDirectory) -> strata.computeIfAbsent(team, name -> new Stratum()).jobs
+				.add(jobDirectory));
+
+		for (Stratum stratum : strata.values()) {
+			Collections.shuffle(stratum.jobs, random);
+		}
+
+		double fraction = jobFraction;
+
+		while (true) {
+
+			rounds++;
+			sampleRound(fraction, deadline);
+
+			boolean complete = strata.values().stream().allMatch(stratum -> stratum.sampled == stratum.jobs.size());
+
+			if (complete || System.currentTimeMillis() >= deadline || getRelativeError() <= targetRelativeError) {
+				break;
+			}
+
+			fraction = Math.min(1, fraction * 2);
+		}
+
+		elapsedMillis = System.currentTimeMillis() - start;
+
+		System.out.println("Sampled " + getTotal(s -> s.sampled) + " of " + getTotal(s -> s.jobs.size()) + " jobs in "
+				+ rounds + " rounds and " + elapsedMillis / 1000 + " s, relative error "
+				+ String.format("%.1f%%", getRelativeError() * 100));
+
+	}
+
+	/**
+	 * Samples the jobs of all teams one at a time, in turns, until each team
+	 * reaches the fraction, so that running out of time leaves every team
+	 * with a similar sample.
+	 */
+	private void sampleRound(double fraction, long deadline) {
+
+		boolean sampling = true;
+
+		while (sampling && System.currentTimeMillis() < deadline) {
+
+			sampling = false;
+
+			for (Stratum stratum : strata.values()) {
+
+				int population = stratum.jobs.size();
+				int target = Math.min(population, Math.max(2, (int) Math.ceil(fraction * population)));
+
+				if (stratum.sampled < target) {
+					sample(stratum, stratum.jobs.get(stratum.sampled));
+					sampling = true;
+				}
+			}
+		}
+
+	}
+
+	private void sample(Stratum stratum, Path jobDirectory) {
+
+		double[] measure = measureJob(jobDirectory);
+		double size = (measure[0] + 1023) / 1024;
+
+		boolean active = false;
+		try {
+			Date lastRun = new Job(jobDirectory).getLastRunDate();
+			active = lastRun != null && lastRun.getTime() >= activeSince;
+		} catch (IllegalArgumentException ex) {
+			// the job was deleted or its runmap is corrupted
+			System.out.println(ex.getMessage());
+		}
+
+		stratum.sampled++;
+		stratum.sizeSum += size;
+		stratum.sizeSquares += size * size;
+		stratum.sizeWithinVariance += measure[1] / (1024.0 * 1024.0);
+		stratum.activeSum += active ? 1 : 0;
+
+	}
+
+	/**
+	 * Measures a job directory, except its builds and nested jobs, and adds
+	 * the size of its builds extrapolated from a random sample of them. At
+	 * least two builds are measured when there are several, so that the
+	 * variance of the extrapolation can be estimated.
+	 *
+	 * @return the estimated size of the job in bytes and the variance of the
+	 *         estimate in square bytes
+	 */
+	private double[] measureJob(Path jobDirectory) {
+
+		// a job directory can be a link, as the full scan allows
+		if (Files.isSymbolicLink(jobDirectory)) {
+			try {
+				jobDirectory = jobDirectory.toRealPath();
+			} catch (IOException ex) {
+				System.out.println(ex.getMessage());
+				return new double[] { 0, 0 };
+			}
+		}
+
+		double bytes = measure(jobDirectory, jobDirectory);
+
+		Path buildsDirectory = jobDirectory.resolve("builds");
+		if (!Files.isDirectory(buildsDirectory)) {
+			return new double[] { bytes, 0 };
+		}
+
+		List<Path> builds = new ArrayList<>();
+
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(buildsDirectory)) {
+			for (Path entry : entries) {
+
+				BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class,
+						LinkOption.NOFOLLOW_LINKS);
+
+				if (attrs.isDirectory()) {
+					builds.add(entry);
+				} else {
+					bytes += attrs.size();
+				}
+			}
+		} catch (IOException ex) {
+			System.out.println(ex.getMessage());
+			return new double[] { bytes, 0 };
+		}
+
+		if (builds.isEmpty()) {
+			return new double[] { bytes, 0 };
+		}
+
+		int population = builds.size();
+		int sampledBuilds = Math.min(population, Math.max(2, (int) Math.ceil(buildFraction * population)));
+		Collections.shuffle(builds, random);
+
+		double sampledBytes = 0;
+		double sampledSquares = 0;
+		for (Path build : builds.subList(0, sampledBuilds)) {
+			double buildBytes = measure(build, null);
+			sampledBytes += buildBytes;
+			sampledSquares += buildBytes * buildBytes;
+		}
+
+		double variance = 0;
+		if (sampledBuilds < population) {
+			double buildVariance = Math.max(0,
+					(sampledSquares - sampledBytes * sampledBytes / sampledBuilds) / (sampledBuilds - 1));
+			variance = (double) population * population * (1 - (double) sampledBuilds / population)
+					* buildVariance / sampledBuilds;
+		}
+
+		return new double[] { bytes + sampledBytes * population / sampledBuilds, variance };
+
+	}
+
+	/**
+	 * @param directory
+	 *            the directory to measure
+	 * @param jobDirectory
+	 *            job directory whose builds and nested jobs are skipped, or
+	 *            <code>null</code>
+	 * @return the size in bytes of the files inside the directory
+	 */
+	private long measure(Path directory, Path jobDirectory) {
+
+		long[] bytes = new long[1];
+
+		try {
+			Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+
+					if (jobDirectory != null && jobDirectory.equals(dir.getParent())) {
+						String name = dir.getFileName().toString();
+						if (name.equals("builds") || name.equals("jobs")) {
+							return FileVisitResult.SKIP_SUBTREE;
+						}
+					}
+
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					bytes[0] += attrs.size();
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException ex) {
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException ex) {
+			System.out.println(ex.getMessage());
+		}
+
+		return bytes[0];
+
+	}
+
+	/**
+	 * @return the margin of the total size relative to the total size, or
+	 *         infinity if some team doesn't have enough samples yet
+	 */
+	private double getRelativeError() {
+
+		double total = 0;
+		double variance = 0;
+
+		for (Stratum stratum : strata.values()) {
+			total += stratum.getTotal(stratum.sizeSum);
+			variance += stratum.getVariance(stratum.sizeSum, stratum.sizeSquares, stratum.sizeWithinVariance);
+		}
+
+		if (total == 0) {
+			return variance == 0 ? 0 : Double.POSITIVE_INFINITY;
+		}
+
+		return Z_95 * Math.sqrt(variance) / total;
+
+	}
+
+	private int getTotal(ToIntFunction<Stratum> count) {
+
+		return strata.values().stream().mapToInt(count).sum();
+
+	}
+
+	/**
+	 * Writes a CSV file with the estimated size and active jobs of each team
+	 * and of all the teams, with their 95% margins
+	 *
+	 * @param csvFilePath
+	 *            the path of the CSV file
+	 */
+	public void writeToCSVFile(String csvFilePath) {
+
+		if (csvFilePath == null) {
+			return;
+		}
+
+		System.out.println("Generating report file : " + csvFilePath);
+
+		try (PrintWriter reportPW = new PrintWriter(new FileOutputStream(csvFilePath, false))) {
+
+			reportPW.write("'Team','Jobs','Sampled Jobs','Estimated Disk Size KB','Disk Size Margin KB',"
+					+ "'Estimated Active Jobs','Active Jobs Margin'\n");
+
+			int jobs = 0;
+			int sampled = 0;
+			double size = 0;
+			double sizeVariance = 0;
+			double active = 0;
+			double activeVariance = 0;
+
+			for (Map.Entry<String, Stratum> team : strata.entrySet()) {
+
+				Stratum stratum = team.getValue();
+
+				double teamSize = stratum.getTotal(stratum.sizeSum);
+				double teamSizeVariance = stratum.getVariance(stratum.sizeSum, stratum.sizeSquares,
+						stratum.sizeWithinVariance);
+				double teamActive = stratum.getTotal(stratum.activeSum);
+				double teamActiveVariance = stratum.getVariance(stratum.activeSum, stratum.activeSum, 0);
+
+				writeEstimate(reportPW, team.getKey(), stratum.jobs.size(), stratum.sampled, teamSize, teamSizeVariance,
+						teamActive, teamActiveVariance);
+
+				jobs += stratum.jobs.size();
+				sampled += stratum.sampled;
+				size += teamSize;
+				sizeVariance += teamSizeVariance;
+				active += teamActive;
+				activeVariance += teamActiveVariance;
+			}
+
+			writeEstimate(reportPW, ALL_TEAMS, jobs, sampled, size, sizeVariance, active, activeVariance);
+
+		} catch (FileNotFoundException ex) {
+			System.out.println(ex.getMessage());
+		}
+
+	}
+
+	private void writeEstimate(PrintWriter reportPW, String team, int jobs, int sampled, double size,
+			double sizeVariance, double active, double activeVariance) {
+
+		reportPW.write("'" + team + "','" + jobs + "','" + sampled + "','" + format(size) + "','"
+				+ format(Z_95 * Math.sqrt(sizeVariance)) + "','" + format(active) + "','"
+				+ format(Z_95 * Math.sqrt(activeVariance)) + "'\n");
+
+	}
+
+	private String format(double value) {
+
+		return Double.isNaN(value) || Double.isInfinite(value) ? "" : String.format("%.0f", value);
+
+	}
+
+	/**
+	 * The jobs of a team, in random order, and the sums of the values measured
+	 * on the first <code>sampled</code> ones.
+	 */
+	private static class Stratum {
+
+		final List<Path> jobs = new ArrayList<>();
+		int sampled;
+		double sizeSum;
+		double sizeSquares;
+		double sizeWithinVariance;
+		double activeSum;
+
+		/**
+		 * @return the estimated total of a value over all the jobs of the team
+		 */
+		double getTotal(double sum) {
+
+			if (sampled == 0) {
+				return jobs.isEmpty() ? 0 : Double.NaN;
+			}
+
+			return jobs.size() * sum / sampled;
+		}
+
+		/**
+		 * @return the variance of the estimated total: the variance between
+		 *         the sampled jobs, with the finite population correction,
+		 *         plus the sum of the variances of the values estimated inside
+		 *         each sampled job, scaled up to all the jobs
+		 */
+		double getVariance(double sum, double squares, double withinVariance) {
+
+			int population = jobs.size();
+
+			if (population == 0) {
+				return 0;
+			}
+
+			if (sampled < 2 && sampled < population) {
+				return Double.POSITIVE_INFINITY;
+			}
+
+			double betweenVariance = 0;
+			if (sampled < population) {
+				double sampleVariance = Math.max(0, (squares - sum * sum / sampled) / (sampled - 1));
+				betweenVariance = (double) population * population * (1 - (double) sampled / population)
+						* sampleVariance / sampled;
+			}
+
+			return betweenVariance + (double) population / sampled * withinVariance;
+		}
+	}
+
+}
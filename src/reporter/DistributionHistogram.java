@@ -0,0 +1,283 @@
+package reporter;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.util.Calendar;
+
+import models.JobTable;
+
+/**
+ * Counts the jobs of a JobTable in disk size buckets and idle age buckets,
+ * per team and globally. Folders are counted by their own disk size, without
+ * their nested jobs, so that the disk size totals count every file once.
+ *
+ * The counters are allocated once for the number of teams and buckets, so
+ * adding a job never allocates. Histograms filled by parallel workers are
+ * combined with {@link #merge(DistributionHistogram)}.
+ */
+public class DistributionHistogram {
+
+	private static final String ALL_TEAMS = "(all)";
+
+	// lower bounds in KB of the size buckets after the first one, ascending
+	private final long[] sizeBoundaries;
+
+	// idle age bounds in months and the matching last run cutoffs, the
+	// cutoffs ascending
+	private final int[] idleMonths;
+	private final long[] idleCutoffs;
+
+	private final int teamCount;
+	private final int sizeBuckets;
+	private final int idleBuckets;
+
+	// counters per team, the global ones at index teamCount
+	private final long[] sizeJobs;
+	private final long[] sizeKilobytes;
+	private final long[] idleJobs;
+	private final long[] idleKilobytes;
+
+	/**
+	 * Constructor for a histogram with log scale size buckets: below
+	 * <code>minSize</code>, then each one <code>factor</code> times larger
+	 * than the previous one.
+	 *
+	 * @param teamCount
+	 *            number of teams of the JobTable
+	 * @param minSize
+	 *            upper bound in KB of the first size bucket
+	 * @param factor
+	 *            ratio between the bounds of consecutive size buckets
+	 * @param boundaries
+	 *            number of size bucket bounds
+	 * @param idleMonths
+	 *            idle age bounds in months, ascending
+	 * @param now
+	 *            the time idle ages are measured from in milliseconds since
+	 *            the epoch
+	 */
+	public DistributionHistogram(int teamCount, long minSize, long factor, int boundaries, int[] idleMonths,
+			long now) {
+
+		if (minSize < 1 || factor < 2 || boundaries < 1) {
+			throw new IllegalArgumentException("size buckets need a positive minimum, a factor above 1 and a bound");
+		}
+
+		this.sizeBoundaries = new long[boundaries];
+		long boundary = minSize;
+		for (int i = 0; i < boundaries; i++) {
+			sizeBoundaries[i] = boundary;
+			boundary = boundary > Long.MAX_VALUE / factor ? Long.MAX_VALUE : boundary * factor;
+		}
+
+		this.idleMonths = idleMonths.clone();
+		this.idleCutoffs = new long[idleMonths.length];
+		for (int i = 0; i < idleMonths.length; i++) {
+
+			if (i > 0 && idleMonths[i] <= idleMonths[i - 1]) {
+				throw new IllegalArgumentException("idle months must be ascending");
+			}
+
+			Calendar cal = Calendar.getInstance();
+			cal.setTimeInMillis(now);
+			cal.add(Calendar.MONTH, -idleMonths[i]);
+			idleCutoffs[idleMonths.length - 1 - i] = cal.getTimeInMillis();
+		}
+
+		this.teamCount = teamCount;
+		this.sizeBuckets = sizeBoundaries.length + 1;
+		// one more bucket for the jobs that never ran
+		this.idleBuckets = idleCutoffs.length + 2;
+
+		this.sizeJobs = new long[(teamCount + 1) * sizeBuckets];
+		this.sizeKilobytes = new long[(teamCount + 1) * sizeBuckets];
+		this.idleJobs = new long[(teamCount + 1) * idleBuckets];
+		this.idleKilobytes = new long[(teamCount + 1) * idleBuckets];
+
+	}
+
+	/**
+	 * Constructor for an empty histogram with the same buckets as another
+	 * one, to be filled by another worker and merged.
+	 *
+	 * @param other
+	 *            the histogram whose buckets are copied
+	 */
+	public DistributionHistogram(DistributionHistogram other) {
+
+		this.sizeBoundaries = other.sizeBoundaries;
+		this.idleMonths = other.idleMonths;
+		this.idleCutoffs = other.idleCutoffs;
+		this.teamCount = other.teamCount;
+		this.sizeBuckets = other.sizeBuckets;
+		this.idleBuckets = other.idleBuckets;
+
+		this.sizeJobs = new long[other.sizeJobs.length];
+		this.sizeKilobytes = new long[other.sizeKilobytes.length];
+		this.idleJobs = new long[other.idleJobs.length];
+		this.idleKilobytes = new long[other.idleKilobytes.length];
+
+	}
+
+	/**
+	 * Counts a job in its size and idle age buckets.
+	 *
+	 * @param jobs
+	 *            a JobTable with at most the number of teams of the histogram
+	 * @param row
+	 *            the row of the job
+	 * @param size
+	 *            the disk size in KB of the job without its nested jobs, as
+	 *            returned by {@link JobTable#getOwnDiskSpaceSizes()}
+	 */
+	public void add(JobTable jobs, int row, long size) {
+
+		int team = jobs.getTeamId(row);
+		long lastRun = jobs.getLastRunTime(row);
+
+		int sizeBucket = countNotAbove(sizeBoundaries, size);
+		int idleBucket = lastRun == JobTable.NO_DATE ? idleBuckets - 1
+				: idleCutoffs.length - countNotAbove(idleCutoffs, lastRun);
+
+		count(sizeJobs, sizeKilobytes, team * sizeBuckets + sizeBucket, size);
+		count(sizeJobs, sizeKilobytes, teamCount * sizeBuckets + sizeBucket, size);
+		count(idleJobs, idleKilobytes, team * idleBuckets + idleBucket, size);
+		count(idleJobs, idleKilobytes, teamCount * idleBuckets + idleBucket, size);
+
+	}
+
+	/**
+	 * Adds the counters of another histogram with the same buckets to this
+	 * one.
+	 *
+	 * @param other
+	 *            a histogram created with the same buckets
+	 */
+	public void merge(DistributionHistogram other) {
+
+		if (other.sizeJobs.length != sizeJobs.length || other.idleJobs.length != idleJobs.length) {
+			throw new IllegalArgumentException("histograms have different buckets");
+		}
+
+		for (int i = 0; i < sizeJobs.length; i++) {
+			sizeJobs[i] += other.sizeJobs[i];
+			sizeKilobytes[i] += other.sizeKilobytes[i];
+		}
+
+		for (int i = 0; i < idleJobs.length; i++) {
+			idleJobs[i] += other.idleJobs[i];
+			idleKilobytes[i] += other.idleKilobytes[i];
+		}
+
+	}
+
+	/**
+	 * Writes a CSV file with the number of jobs and their disk size in each
+	 * bucket, per team and for all the teams
+	 *
+	 * @param jobs
+	 *            the JobTable the histogram was filled from
+	 * @param csvFilePath
+	 *            the path of the CSV file
+	 */
+	public void writeToCSVFile(JobTable jobs, String csvFilePath) {
+
+		if (jobs == null || csvFilePath == null) {
+			return;
+		}
+
+		System.out.println("Generating report file : " + csvFilePath);
+
+		try (PrintWriter reportPW = new PrintWriter(new FileOutputStream(csvFilePath, false))) {
+
+			reportPW.write("'Team','Histogram','Bucket','Jobs','Disk Size KB'\n");
+
+			for (int team = 0; team <= teamCount; team++) {
+
+				String teamName = team == teamCount ? ALL_TEAMS : jobs.getTeamNameById(team);
+
+				for (int bucket = 0; bucket < sizeBuckets; bucket++) {
+					int i = team * sizeBuckets + bucket;
+					reportPW.write("'" + teamName + "','Disk Size','" + getSizeBucketLabel(bucket) + "','" + sizeJobs[i]
+							+ "','" + sizeKilobytes[i] + "'\n");
+				}
+
+				for (int bucket = 0; bucket < idleBuckets; bucket++) {
+					int i = team * idleBuckets + bucket;
+					reportPW.write("'" + teamName + "','Idle Age','" + getIdleBucketLabel(bucket) + "','" + idleJobs[i]
+							+ "','" + idleKilobytes[i] + "'\n");
+				}
+			}
+
+		} catch (FileNotFoundException ex) {
+			System.out.println(ex.getMessage());
+		}
+
+	}
+
+	private String getSizeBucketLabel(int bucket) {
+
+		if (bucket == 0) {
+			return "< " + sizeBoundaries[0] + " KB";
+		}
+
+		if (bucket == sizeBoundaries.length) {
+			return ">= " + sizeBoundaries[bucket - 1] + " KB";
+		}
+
+		return sizeBoundaries[bucket - 1] + " - " + sizeBoundaries[bucket] + " KB";
+
+	}
+
+	private String getIdleBucketLabel(int bucket) {
+
+		if (bucket == idleBuckets - 1) {
+			return "never run";
+		}
+
+		if (idleMonths.length == 0) {
+			return "any age";
+		}
+
+		if (bucket == 0) {
+			return "< " + idleMonths[0] + " months";
+		}
+
+		if (bucket == idleMonths.length) {
+			return ">= " + idleMonths[bucket - 1] + " months";
+		}
+
+		return idleMonths[bucket - 1] + " - " + idleMonths[bucket] + " months";
+
+	}
+
+	private static void count(long[] jobs, long[] kilobytes, int index, long size) {
+
+		jobs[index]++;
+		kilobytes[index] += size;
+
+	}
+
+	/**
+	 * @return the number of values of an ascending array that are not above a
+	 *         value
+	 */
+	private static int countNotAbove(long[] ascending, long value) {
+
+		int low = 0;
+		int high = ascending.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (ascending[middle] <= value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+
+	}
+
+}
@@ -2,18 +2,29 @@ package reporter;
 
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import models.DirectorySource;
 import models.Hudson;
-import models.Job;
+import models.HudsonHomeSource;
+import models.JobTable;
 import utils.PropertyFileReader;
 
 public class Reporter {
 
+	// jobs of each scan held in memory while sorting them for the diff report
+	private static final int DIFF_MAX_JOBS_IN_MEMORY = 100000;
+
+	// build start and end events held in memory while sorting them for the
+	// utilization report
+	private static final int UTILIZATION_MAX_EVENTS_IN_MEMORY = 200000;
+
 	public static void main(String[] args) {
 
 		new Reporter().generateReports();
@@ -32,40 +43,245 @@ public class Reporter {
 		// getting hudson home
 		String hudsonHomeDir = pr.getPropertyValue(pr.HUDSON_HOME);
 
+		// approximate mode, only estimates sizes and activity from a sample
+		if ("approximate".equalsIgnoreCase(getOptionalPropertyValue(pr, pr.SCAN_MODE))) {
+			generateEstimateReport(pr, hudsonHomeDir);
+			return;
+		}
+
 		// create Hudson instance
 		Hudson hudsonInstance = new Hudson(hudsonHomeDir);
 
-		// get all hudson jobs
-		List<Job> allJobs = hudsonInstance.getJobs();
+		// retention policies to simulate
+		List<RetentionPolicy> retentionPolicies = RetentionPolicy
+				.parseList(getOptionalPropertyValue(pr, pr.RETENTION_POLICIES));
+		RetentionSimulator retention = new RetentionSimulator(retentionPolicies, System.currentTimeMillis());
+
+		// trigger schedules, only collected when a trigger report is wanted
+		String triggerHeatmapReport = getOptionalPropertyValue(pr, pr.TRIGGER_HEATMAP_CSV_REPORT);
+		String triggerCollisionsReport = getOptionalPropertyValue(pr, pr.TRIGGER_COLLISIONS_CSV_REPORT);
+		boolean analyzeTriggers = triggerHeatmapReport != null || triggerCollisionsReport != null;
+		TriggerScheduleAnalyzer triggers = new TriggerScheduleAnalyzer(System.currentTimeMillis());
+
+		// build records, read by parallel workers while the scan goes on
+		String utilizationReport = getOptionalPropertyValue(pr, pr.UTILIZATION_CSV_REPORT);
+		String utilizationTimelineReport = getOptionalPropertyValue(pr, pr.UTILIZATION_TIMELINE_CSV_REPORT);
+		boolean analyzeUtilization = utilizationReport != null || utilizationTimelineReport != null;
+		UtilizationAnalyzer utilization = analyzeUtilization ? getUtilizationAnalyzer(pr) : null;
+
+		// runmap and build directories consistency
+		String consistencyReport = getOptionalPropertyValue(pr, pr.BUILD_CONSISTENCY_CSV_REPORT);
+		BuildConsistencyChecker consistency = new BuildConsistencyChecker();
+
+		// get all hudson jobs, scanning the instance only once for every
+		// report
+		JobTable allJobs = new JobTable();
+		hudsonInstance.forEachJob(job -> {
+			allJobs.add(job);
+			if (!retentionPolicies.isEmpty()) {
+				retention.addJob(job);
+			}
+			if (analyzeTriggers) {
+				triggers.addJob(job);
+			}
+			if (analyzeUtilization) {
+				utilization.addJob(job);
+			}
+			if (consistencyReport != null) {
+				consistency.addJob(job);
+			}
+		});
+
+		// the build records are read from the scanned home, so the workers
+		// are done with it before anything else can fail
+		if (analyzeUtilization) {
+			utilization.finish();
+		}
+
+		// previous scan to compare with, read before a report or snapshot
+		// of this scan can overwrite it
+		String previousScan = getOptionalPropertyValue(pr, pr.DIFF_PREVIOUS_SCAN);
+		String diffReport = getOptionalPropertyValue(pr, pr.DIFF_CSV_REPORT);
+		String growthStr = getOptionalPropertyValue(pr, pr.DIFF_SIZE_GROWTH_PERCENT);
+		double growthPercent = growthStr == null ? 10 : Double.parseDouble(growthStr);
+		ScanDiff diff = new ScanDiff(growthPercent, DIFF_MAX_JOBS_IN_MEMORY);
+		if (diffReport != null) {
+			diff.readPreviousScan(previousScan);
+		}
 
 		// general report
 		String reportFileName = pr.getPropertyValue(pr.GENERAL_CSV_REPORT_FILE);
-		writeJobsToCSVFile(allJobs, reportFileName);
+		writeJobsToCSVFile(allJobs, getAllJobs(allJobs), reportFileName);
 
 		// size report
 		reportFileName = pr.getPropertyValue(pr.JOBS_BIGGER_THAN_THRESHOLD_KB_CVS_REPORT);
 		String sizeThresholdStr = pr.getPropertyValue(pr.TRESHOLD_KILOBYTES);
-		List<Job> bigJobs = getJobsBiggerThanThreshold(allJobs, sizeThresholdStr);
-		writeJobsToCSVFile(bigJobs, reportFileName);
+		int[] bigJobs = getJobsBiggerThanThreshold(allJobs, sizeThresholdStr);
+		writeJobsToCSVFile(allJobs, bigJobs, reportFileName);
 
 		// disabled jobs
 		reportFileName = pr.getPropertyValue(pr.DISABLED_JOBS_CSV_REPORT);
-		List<Job> disabledJobs = getDisabledJobs(allJobs);
-		writeJobsToCSVFile(disabledJobs, reportFileName);
+		int[] disabledJobs = getDisabledJobs(allJobs);
+		writeJobsToCSVFile(allJobs, disabledJobs, reportFileName);
 
 		// jobs without config file
 		reportFileName = pr.getPropertyValue(pr.JOBS_WITHOUT_CONFIG_FILE_CSV_REPORT_FILE);
-		List<Job> noConfigFileJobs = getJobsWithoutConfigFile(allJobs);
-		writeJobsToCSVFile(noConfigFileJobs, reportFileName);
+		int[] noConfigFileJobs = getJobsWithoutConfigFile(allJobs);
+		writeJobsToCSVFile(allJobs, noConfigFileJobs, reportFileName);
 
 		// jobs without config file
 		reportFileName = pr.getPropertyValue(pr.JOBS_RUN_MORE_THAN_ONE_MONTH_AGO_CVS_REPORT);
-		List<Job> oldJobs = getJobsOlderThanAMonth(allJobs);
-		writeJobsToCSVFile(oldJobs, reportFileName);
+		int[] oldJobs = getJobsOlderThanAMonth(allJobs);
+		writeJobsToCSVFile(allJobs, oldJobs, reportFileName);
+
+		// size and idle age distribution, counted by parallel workers
+		String distributionReport = getOptionalPropertyValue(pr, pr.DISTRIBUTION_CSV_REPORT);
+		if (distributionReport != null) {
+			DistributionHistogram distribution = getDistribution(allJobs, pr);
+			distribution.writeToCSVFile(allJobs, distributionReport);
+		}
+
+		// snapshot of this scan, to be compared with later scans
+		String snapshotFileName = getOptionalPropertyValue(pr, pr.SNAPSHOT_FILE);
+		ScanDiff.writeSnapshot(allJobs, snapshotFileName);
+
+		// changes since the previous scan, compared with this scan by default
+		String currentScan = getOptionalPropertyValue(pr, pr.DIFF_CURRENT_SCAN);
+		if (currentScan == null) {
+			currentScan = snapshotFileName != null ? snapshotFileName : pr.getPropertyValue(pr.GENERAL_CSV_REPORT_FILE);
+		}
+		diff.writeDiffToCSVFile(currentScan, diffReport);
+
+		// retention what-if reports
+		if (!retentionPolicies.isEmpty()) {
+			retention.writeJobsToCSVFile(getOptionalPropertyValue(pr, pr.RETENTION_CSV_REPORT));
+			retention.writeTeamsToCSVFile(getOptionalPropertyValue(pr, pr.RETENTION_BY_TEAM_CSV_REPORT));
+		}
+
+		// trigger load reports
+		if (analyzeTriggers) {
+			String topStr = getOptionalPropertyValue(pr, pr.TRIGGER_COLLISIONS_TOP);
+			triggers.writeHeatmapToCSVFile(triggerHeatmapReport);
+			triggers.writeCollisionsToCSVFile(triggerCollisionsReport, topStr == null ? 20 : Integer.parseInt(topStr));
+		}
+
+		// orphaned and inconsistent build data
+		consistency.writeToCSVFile(consistencyReport);
+
+		// build concurrency reports, written before an archive is closed
+		if (analyzeUtilization) {
+			utilization.writeToCSVFiles(utilizationReport, utilizationTimelineReport);
+		}
+
+		try {
+			diff.close();
+			allJobs.close();
+			hudsonInstance.close();
+		} catch (IOException ex) {
+			System.out.println(ex.getMessage());
+		}
 
 	}
 
-	private List<Job> getJobsBiggerThanThreshold(List<Job> jobs, String threshold) {
+	/**
+	 * This method generates the approximate disk size and activity report
+	 * from a sample of the jobs and builds
+	 *
+	 */
+	private void generateEstimateReport(PropertyFileReader pr, String hudsonHomeDir) {
+
+		String jobFractionStr = getOptionalPropertyValue(pr, pr.ESTIMATE_JOB_FRACTION);
+		String buildFractionStr = getOptionalPropertyValue(pr, pr.ESTIMATE_BUILD_FRACTION);
+		String timeBudgetStr = getOptionalPropertyValue(pr, pr.ESTIMATE_TIME_BUDGET_SECONDS);
+		String targetErrorStr = getOptionalPropertyValue(pr, pr.ESTIMATE_TARGET_ERROR_PERCENT);
+
+		double jobFraction = jobFractionStr == null ? 0.05 : Double.parseDouble(jobFractionStr);
+		double buildFraction = buildFractionStr == null ? 0.1 : Double.parseDouble(buildFractionStr);
+		long timeBudget = timeBudgetStr == null ? 30 : Long.parseLong(timeBudgetStr);
+		double targetError = targetErrorStr == null ? 5 : Double.parseDouble(targetErrorStr);
+
+		DiskUsageEstimator estimator = new DiskUsageEstimator(jobFraction, buildFraction, timeBudget * 1000,
+				targetError / 100, System.nanoTime());
+
+		try (HudsonHomeSource source = HudsonHomeSource.forLocation(hudsonHomeDir)) {
+
+			DirectorySource directory = source.getDirectorySource();
+
+			if (directory == null) {
+				System.out.println("Can not sample " + hudsonHomeDir + ", it can only be read sequentially");
+				return;
+			}
+
+			estimator.estimate(directory);
+			estimator.writeToCSVFile(getOptionalPropertyValue(pr, pr.ESTIMATE_CSV_REPORT));
+
+		} catch (IOException ex) {
+			System.out.println(ex.getMessage());
+		}
+
+	}
+
+	/**
+	 * Returns the value of a property that enables an optional report
+	 *
+	 * @return the value of the property or <code>null</code> if it is not
+	 *         set or blank
+	 */
+	private String getOptionalPropertyValue(PropertyFileReader pr, String propertyName) {
+
+		String value = pr.getPropertyValue(propertyName);
+		return value == null || value.trim().isEmpty() ? null : value.trim();
+
+	}
+
+	private DistributionHistogram getDistribution(JobTable jobs, PropertyFileReader pr) {
+
+		String minSizeStr = getOptionalPropertyValue(pr, pr.SIZE_HISTOGRAM_MIN_KB);
+		String factorStr = getOptionalPropertyValue(pr, pr.SIZE_HISTOGRAM_FACTOR);
+		String bucketsStr = getOptionalPropertyValue(pr, pr.SIZE_HISTOGRAM_BUCKETS);
+		String idleMonthsStr = getOptionalPropertyValue(pr, pr.IDLE_HISTOGRAM_MONTHS);
+
+		long minSize = minSizeStr == null ? 1024 : Long.parseLong(minSizeStr);
+		long factor = factorStr == null ? 10 : Long.parseLong(factorStr);
+		int buckets = bucketsStr == null ? 5 : Integer.parseInt(bucketsStr);
+		int[] idleMonths = Arrays.stream((idleMonthsStr == null ? "1,3,6,12" : idleMonthsStr).split(","))
+				.mapToInt(months -> Integer.parseInt(months.trim())).toArray();
+
+		DistributionHistogram empty = new DistributionHistogram(jobs.getTeamCount(), minSize, factor, buckets,
+				idleMonths, System.currentTimeMillis());
+
+		long[] ownSizes = jobs.getOwnDiskSpaceSizes();
+
+		return IntStream.range(0, jobs.size()).parallel().collect(() -> new DistributionHistogram(empty),
+				(histogram, row) -> histogram.add(jobs, row, ownSizes[row]), DistributionHistogram::merge);
+
+	}
+
+	private UtilizationAnalyzer getUtilizationAnalyzer(PropertyFileReader pr) {
+
+		String daysStr = getOptionalPropertyValue(pr, pr.UTILIZATION_DAYS);
+
+		long now = System.currentTimeMillis();
+		long windowStart = -1;
+		if (daysStr != null) {
+			Calendar cal = Calendar.getInstance();
+			cal.setTimeInMillis(now);
+			cal.add(Calendar.DAY_OF_MONTH, -Integer.parseInt(daysStr));
+			windowStart = cal.getTimeInMillis();
+		}
+
+		return new UtilizationAnalyzer(windowStart, now, UTILIZATION_MAX_EVENTS_IN_MEMORY,
+				Runtime.getRuntime().availableProcessors());
+
+	}
+
+	private int[] getAllJobs(JobTable jobs) {
+
+		return IntStream.range(0, jobs.size()).toArray();
+
+	}
+
+	private int[] getJobsBiggerThanThreshold(JobTable jobs, String threshold) {
 
 		if (jobs == null || threshold == null) {
 			return null;
@@ -73,45 +289,46 @@ public class Reporter {
 
 		long thresholdL = Long.parseLong(threshold);
 
-		return jobs.stream().filter(job -> job.getDiskSpaceSize() > thresholdL).collect(Collectors.toList());
+		return IntStream.range(0, jobs.size()).filter(row -> jobs.getDiskSpaceSize(row) > thresholdL).toArray();
 
 	}
 
-	private List<Job> getJobsOlderThanAMonth(List<Job> jobs) {
+	private int[] getJobsOlderThanAMonth(JobTable jobs) {
 
 		// get Date from a month ago
 		Calendar cal = Calendar.getInstance();
 		cal.add(Calendar.MONTH, -1);
-		Date oneMonthAgo = cal.getTime();
-		return jobs.stream()
-				.filter(job -> job.getLastRunDate() != null && job.getLastRunDate().compareTo(oneMonthAgo) == -1)
-				.collect(Collectors.toList());
+		long oneMonthAgo = cal.getTimeInMillis();
+		return IntStream.range(0, jobs.size())
+				.filter(row -> jobs.getLastRunTime(row) != JobTable.NO_DATE && jobs.getLastRunTime(row) < oneMonthAgo)
+				.toArray();
 
 	}
 
-	private List<Job> getDisabledJobs(List<Job> jobs) {
+	private int[] getDisabledJobs(JobTable jobs) {
 
-		return jobs.stream().filter(job -> job.isDisabled() != null && job.isDisabled()).collect(Collectors.toList());
+		return IntStream.range(0, jobs.size()).filter(row -> jobs.isDisabled(row) != null && jobs.isDisabled(row))
+				.toArray();
 
 	}
 
-	private List<Job> getJobsWithoutConfigFile(List<Job> jobs) {
+	private int[] getJobsWithoutConfigFile(JobTable jobs) {
 
-		return jobs.stream().filter(job -> job.hasConfigFile()).collect(Collectors.toList());
+		return IntStream.range(0, jobs.size()).filter(row -> !jobs.hasConfigFile(row)).toArray();
 
 	}
 
 	/**
-	 * Converts a List of Job objects into a CSV file containing the data of all
+	 * Converts rows of a JobTable into a CSV file containing the data of all
 	 * jobs each job per line
 	 *
 	 * @exception FileNotFoundException
 	 *                if the csv file cant be created
 	 */
-	private void writeJobsToCSVFile(List<Job> hudsonJobs, String csvFilePath) {
+	private void writeJobsToCSVFile(JobTable hudsonJobs, int[] rows, String csvFilePath) {
 		
 
-		if (hudsonJobs == null || csvFilePath == null) {
+		if (hudsonJobs == null || rows == null || csvFilePath == null) {
 			return;
 		}
 		
@@ -123,7 +340,7 @@ public class Reporter {
 		try {
 			reportPW = new PrintWriter(new FileOutputStream(csvFilePath, false));
 			reportPW.write(csvRows + "\n");
-			hudsonJobs.stream().map((hudsonJob) -> jobToCVSLine(hudsonJob)).forEach((csvLine) -> {
+			Arrays.stream(rows).mapToObj((row) -> jobToCVSLine(hudsonJobs, row)).forEach((csvLine) -> {
 				reportPW.write(csvLine);
 			});
 
@@ -135,41 +352,37 @@ public class Reporter {
 	}
 
 	/**
-	 * Converts a job object into a CSV line
+	 * Converts a row of a JobTable into a CSV line
 	 *
-	 * @param job
-	 *            , a Job object
-	 * @return a csv string representation of the job or <code>null</code> if
-	 *         the provided Job object is null
+	 * @param jobs
+	 *            , a JobTable
+	 * @param row
+	 *            , the row of the job in the table
+	 * @return a csv string representation of the job
 	 */
-	private String jobToCVSLine(Job job) {
-
-		if (job == null) {
-
-			return null;
-		}
+	private String jobToCVSLine(JobTable jobs, int row) {
 
-		String team = job.getTeamName();
-		String name = job.getJobName();
+		String team = jobs.getTeamName(row);
+		String name = jobs.getJobName(row);
 
-		String owner = job.getCreatedBy();
+		String owner = jobs.getCreatedBy(row);
 		owner = owner == null ? "" : owner;
 
-		String description = job.getDescription();
+		String description = jobs.getDescription(row);
 		description = description == null ? "" : description.replace("'", "");
 
-		String size = Long.toString(job.getDiskSpaceSize());
+		String size = Long.toString(jobs.getDiskSpaceSize(row));
 
-		Date creationDate = job.getCreationDate();
+		Date creationDate = jobs.getCreationDate(row);
 		String creationDateStr = creationDate == null ? "" : creationDate.toString();
 
-		Date lastRunDate = job.getLastRunDate();
+		Date lastRunDate = jobs.getLastRunDate(row);
 		String lastRunDateStr = lastRunDate == null ? "" : lastRunDate.toString();
 
-		Boolean disabled = job.isDisabled();
+		Boolean disabled = jobs.isDisabled(row);
 		String disabledStr = disabled == null ? "" : disabled.toString();
 
-		Boolean inExecution = job.isJobInExecution();
+		Boolean inExecution = jobs.isJobInExecution(row);
 		String runningStr = inExecution == null ? "" : inExecution.toString();
 
 		return "'" + team + "','" + name + "','" + owner + "','" + description + "','" + size + "','" + creationDateStr
@@ -0,0 +1,108 @@
+package reporter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import models.BuildHistory;
+
+/**
+ * A "keep the last N builds / D days" build retention policy, as configured
+ * in the log rotation of a Hudson job. A build is kept only if it is one of
+ * the newest N builds and it is not older than D days.
+ */
+public class RetentionPolicy {
+
+	public static final int UNLIMITED = -1;
+
+	private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+	private final int buildsToKeep;
+	private final int daysToKeep;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param buildsToKeep
+	 *            number of builds to keep or <code>UNLIMITED</code>
+	 * @param daysToKeep
+	 *            number of days to keep builds for or <code>UNLIMITED</code>
+	 */
+	public RetentionPolicy(int buildsToKeep, int daysToKeep) {
+
+		if (buildsToKeep < UNLIMITED || daysToKeep < UNLIMITED) {
+			throw new IllegalArgumentException("builds and days to keep must be -1 or positive");
+		}
+
+		this.buildsToKeep = buildsToKeep;
+		this.daysToKeep = daysToKeep;
+
+	}
+
+	/**
+	 * Parses a comma separated list of policies written as
+	 * <code>builds:days</code>, where -1 means no limit. For example
+	 * <code>10:30,20:-1</code>.
+	 *
+	 * @param policies
+	 *            the list of policies
+	 * @return the parsed policies, empty if <code>policies</code> is
+	 *         <code>null</code> or blank
+	 */
+	public static List<RetentionPolicy> parseList(String policies) {
+
+		List<RetentionPolicy> parsed = new ArrayList<>();
+
+		if (policies == null || policies.trim().isEmpty()) {
+			return parsed;
+		}
+
+		for (String policy : policies.split(",")) {
+
+			String[] limits = policy.trim().split(":");
+
+			if (limits.length != 2) {
+				throw new IllegalArgumentException("Invalid retention policy " + policy + ", expected builds:days");
+			}
+
+			parsed.add(new RetentionPolicy(Integer.parseInt(limits[0].trim()), Integer.parseInt(limits[1].trim())));
+		}
+
+		return parsed;
+
+	}
+
+	/**
+	 * @param history
+	 *            the build history of a job
+	 * @param now
+	 *            the time the policy is applied in milliseconds since the
+	 *            epoch
+	 * @return the number of the newest builds that the policy keeps
+	 */
+	public int getBuildsKept(BuildHistory history, long now) {
+
+		int kept = history.size();
+
+		if (buildsToKeep != UNLIMITED) {
+			kept = Math.min(kept, buildsToKeep);
+		}
+
+		if (daysToKeep != UNLIMITED) {
+			kept = Math.min(kept, history.countBuildsSince(now - daysToKeep * DAY_MILLIS));
+		}
+
+		return kept;
+
+	}
+
+	@Override
+	public String toString() {
+
+		String builds = buildsToKeep == UNLIMITED ? "all builds" : buildsToKeep + " builds";
+		String days = daysToKeep == UNLIMITED ? "any age" : daysToKeep + " days";
+
+		return builds + " / " + days;
+
+	}
+
+}
@@ -0,0 +1,158 @@
+package reporter;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import models.BuildHistory;
+import models.Job;
+
+/**
+ * Computes how much disk space a set of candidate retention policies would
+ * reclaim, per job and per team.
+ *
+ * Each job is evaluated once against every policy from the build history
+ * collected while scanning, so adding policies never rescans the disk.
+ */
+public class RetentionSimulator {
+
+	private final List<RetentionPolicy> policies;
+	private final long now;
+
+	private final List<String> jobTeams = new ArrayList<>();
+	private final List<String> jobNames = new ArrayList<>();
+	private final List<int[]> jobBuildCounts = new ArrayList<>();
+	private final List<long[]> jobReclaimableSizes = new ArrayList<>();
+
+	// per team: number of jobs, then builds deleted and bytes reclaimed per
+	// policy
+	private final Map<String, long[]> teamTotals = new TreeMap<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param policies
+	 *            the retention policies to evaluate
+	 * @param now
+	 *            the time the policies are applied in milliseconds since the
+	 *            epoch
+	 */
+	public RetentionSimulator(List<RetentionPolicy> policies, long now) {
+
+		this.policies = policies;
+		this.now = now;
+
+	}
+
+	/**
+	 * Evaluates all the policies against the build history of a job.
+	 *
+	 * @param job
+	 *            a Job object
+	 */
+	public void addJob(Job job) {
+
+		BuildHistory history = job.getBuildHistory();
+
+		// first element is the total number of builds
+		int[] buildCounts = new int[policies.size() + 1];
+		long[] reclaimableSizes = new long[policies.size()];
+		buildCounts[0] = history.size();
+
+		long[] totals = teamTotals.computeIfAbsent(job.getTeamName(), team -> new long[1 + 2 * policies.size()]);
+		totals[0]++;
+
+		for (int i = 0; i < policies.size(); i++) {
+
+			int kept = policies.get(i).getBuildsKept(history, now);
+
+			buildCounts[i + 1] = history.size() - kept;
+			reclaimableSizes[i] = history.getTotalSize() - history.getSizeOfNewest(kept);
+
+			totals[1 + 2 * i] += buildCounts[i + 1];
+			totals[2 + 2 * i] += reclaimableSizes[i];
+		}
+
+		jobTeams.add(job.getTeamName());
+		jobNames.add(job.getJobName());
+		jobBuildCounts.add(buildCounts);
+		jobReclaimableSizes.add(reclaimableSizes);
+
+	}
+
+	/**
+	 * Writes a CSV file with the builds and bytes each policy would delete
+	 * from each job
+	 *
+	 * @param csvFilePath
+	 *            the path of the CSV file
+	 */
+	public void writeJobsToCSVFile(String csvFilePath) {
+
+		if (csvFilePath == null) {
+			return;
+		}
+
+		System.out.println("Generating report file : " + csvFilePath);
+
+		try (PrintWriter reportPW = new PrintWriter(new FileOutputStream(csvFilePath, false))) {
+
+			reportPW.write("'Team','Name','Policy','Builds','Deleted Builds','Reclaimable Bytes'\n");
+
+			for (int job = 0; job < jobNames.size(); job++) {
+
+				int[] buildCounts = jobBuildCounts.get(job);
+				long[] reclaimableSizes = jobReclaimableSizes.get(job);
+
+				for (int i = 0; i < policies.size(); i++) {
+					reportPW.write("'" + jobTeams.get(job) + "','" + jobNames.get(job) + "','" + policies.get(i) + "','"
+							+ buildCounts[0] + "','" + buildCounts[i + 1] + "','" + reclaimableSizes[i] + "'\n");
+				}
+			}
+
+		} catch (FileNotFoundException ex) {
+			System.out.println(ex.getMessage());
+		}
+
+	}
+
+	/**
+	 * Writes a CSV file with the builds and bytes each policy would delete
+	 * from each team
+	 *
+	 * @param csvFilePath
+	 *            the path of the CSV file
+	 */
+	public void writeTeamsToCSVFile(String csvFilePath) {
+
+		if (csvFilePath == null) {
+			return;
+		}
+
+		System.out.println("Generating report file : " + csvFilePath);
+
+		try (PrintWriter reportPW = new PrintWriter(new FileOutputStream(csvFilePath, false))) {
+
+			reportPW.write("'Team','Policy','Jobs','Deleted Builds','Reclaimable Bytes'\n");
+
+			for (Map.Entry<String, long[]> team : teamTotals.entrySet()) {
+
+				long[] totals = team.getValue();
+
+				for (int i = 0; i < policies.size(); i++) {
+					reportPW.write("'" + team.getKey() + "','" + policies.get(i) + "','" + totals[0] + "','"
+							+ totals[1 + 2 * i] + "','" + totals[2 + 2 * i] + "'\n");
+				}
+			}
+
+		} catch (FileNotFoundException ex) {
+			System.out.println(ex.getMessage());
+		}
+
+	}
+
+}
@@ -0,0 +1,309 @@
+package reporter;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+
+import models.JobTable;
+import utils.ExternalSorter;
+
+/**
+ * Compares two scans of a Hudson instance and reports the jobs that were
+ * created, deleted, disabled or grew by more than a percentage.
+ *
+ * A scan is either a general CSV report or a snapshot file. Both scans are
+ * reduced to one line per job, sorted by team and name with an external sort
+ * and merge-joined, so memory use doesn't depend on the number of jobs.
+ *
+ * The previous scan is read and sorted on its own, before the current scan is
+ * written, so that it may be the snapshot file that the current scan replaces.
+ */
+public class ScanDiff implements Closeable {
+
+	private static final String SNAPSHOT_HEADER = "#Team\tName\tDisk Size KB\tDisabled\tLast Run";
+	private static final String CSV_SEPARATOR = "','";
+	private static final int CSV_FIELDS = 9;
+
+	private final double sizeGrowthPercent;
+	private final int maxJobsInMemory;
+	private final ExternalSorter previousScan;
+	private String previousScanPath;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param sizeGrowthPercent
+	 *            growth of the disk size above which a job is reported
+	 * @param maxJobsInMemory
+	 *            number of jobs of each scan kept in memory while sorting
+	 */
+	public ScanDiff(double sizeGrowthPercent, int maxJobsInMemory) {
+
+		this.sizeGrowthPercent = sizeGrowthPercent;
+		this.maxJobsInMemory = maxJobsInMemory;
+		this.previousScan = new ExternalSorter(maxJobsInMemory);
+
+	}
+
+	/**
+	 * Writes a snapshot file with the fields of every job that the diff
+	 * compares, one job per line. Snapshots are smaller and faster to read
+	 * than the general CSV report.
+	 *
+	 * @param jobs
+	 *            the jobs of the scan
+	 * @param snapshotFilePath
+	 *            the path of the snapshot file
+	 */
+	public static void writeSnapshot(JobTable jobs, String snapshotFilePath) {
+
+		if (jobs == null || snapshotFilePath == null) {
+			return;
+		}
+
+		System.out.println("Generating snapshot file : " + snapshotFilePath);
+
+		try (PrintWriter snapshotPW = new PrintWriter(new FileOutputStream(snapshotFilePath, false))) {
+
+			snapshotPW.write(SNAPSHOT_HEADER + "\n");
+
+			for (int row = 0; row < jobs.size(); row++) {
+
+				Boolean disabled = jobs.isDisabled(row);
+				long lastRun = jobs.getLastRunTime(row);
+
+				snapshotPW.write(jobs.getTeamName(row) + "\t" + jobs.getJobName(row) + "\t" + jobs.getDiskSpaceSize(row)
+						+ "\t" + (disabled == null ? "" : disabled.toString()) + "\t"
+						+ (lastRun == JobTable.NO_DATE ? "" : Long.toString(lastRun)) + "\n");
+			}
+
+		} catch (FileNotFoundException ex) {
+			System.out.println(ex.getMessage());
+		}
+
+	}
+
+	/**
+	 * Reads and sorts the older scan. Its file may be overwritten afterwards.
+	 *
+	 * @param previousScanPath
+	 *            a CSV report or snapshot of the older scan
+	 */
+	public void readPreviousScan(String previousScanPath) {
+
+		if (previousScanPath == null) {
+			return;
+		}
+
+		try {
+
+			readScan(previousScanPath, previousScan);
+			this.previousScanPath = previousScanPath;
+
+		} catch (IOException ex) {
+			System.out.println(ex.getMessage());
+		}
+
+	}
+
+	/**
+	 * Compares the previous scan with a newer one and writes the changes to a
+	 * CSV file
+	 *
+	 * @param currentScanPath
+	 *            a CSV report or snapshot of the newer scan
+	 * @param csvFilePath
+	 *            the path of the CSV file
+	 */
+	public void writeDiffToCSVFile(String currentScanPath, String csvFilePath) {
+
+		if (previousScanPath == null || currentScanPath == null || csvFilePath == null) {
+			return;
+		}
+
+		System.out.println("Generating report file : " + csvFilePath);
+
+		try (ExternalSorter currentScan = new ExternalSorter(maxJobsInMemory);
+				PrintWriter reportPW = new PrintWriter(new FileOutputStream(csvFilePath, false))) {
+
+			readScan(currentScanPath, currentScan);
+
+			reportPW.write("'Change','Team','Name','Old Size KB','New Size KB','Growth %'\n");
+			mergeJoin(previousScan.sorted(), currentScan.sorted(), reportPW);
+
+		} catch (IOException | UncheckedIOException ex) {
+			System.out.println(ex.getMessage());
+		}
+
+	}
+
+	/**
+	 * Walks both sorted scans at the same time and writes a line for every
+	 * change found.
+	 */
+	private void mergeJoin(Iterator<String> previousScan, Iterator<String> currentScan, PrintWriter reportPW) {
+
+		String[] previous = nextJob(previousScan);
+		String[] current = nextJob(currentScan);
+
+		while (previous != null || current != null) {
+
+			int comparison = previous == null ? 1 : current == null ? -1 : key(previous).compareTo(key(current));
+
+			if (comparison < 0) {
+
+				writeChange(reportPW, "DELETED", previous, previous[2], "", "");
+				previous = nextJob(previousScan);
+
+			} else if (comparison > 0) {
+
+				writeChange(reportPW, "NEW", current, "", current[2], "");
+				current = nextJob(currentScan);
+
+			} else {
+
+				if (!previous[3].equals("true") && current[3].equals("true")) {
+					writeChange(reportPW, "DISABLED", current, previous[2], current[2], "");
+				}
+
+				long previousSize = Long.parseLong(previous[2]);
+				long currentSize = Long.parseLong(current[2]);
+
+				if (previousSize > 0) {
+
+					double growth = (currentSize - previousSize) * 100.0 / previousSize;
+
+					if (growth > sizeGrowthPercent) {
+						writeChange(reportPW, "GREW", current, previous[2], current[2], String.format("%.1f", growth));
+					}
+				}
+
+				previous = nextJob(previousScan);
+				current = nextJob(currentScan);
+
+			}
+
+		}
+
+	}
+
+	private void writeChange(PrintWriter reportPW, String change, String[] job, String oldSize, String newSize,
+			String growth) {
+
+		reportPW.write("'" + change + "','" + job[0] + "','" + job[1] + "','" + oldSize + "','" + newSize + "','"
+				+ growth + "'\n");
+
+	}
+
+	/**
+	 * @return the team, name, size and disabled flag of the next job in a
+	 *         sorted scan or <code>null</code> at the end of the scan
+	 */
+	private String[] nextJob(Iterator<String> scan) {
+
+		return scan.hasNext() ? scan.next().split("\t", -1) : null;
+
+	}
+
+	private String key(String[] job) {
+
+		return job[0] + "\t" + job[1];
+
+	}
+
+	/**
+	 * Reads a CSV report or a snapshot and adds one line per job to a sorter:
+	 * team, name, disk size and disabled flag separated by tabs. Team and name
+	 * come first so that the sorted lines are ordered by job.
+	 */
+	private void readScan(String scanPath, ExternalSorter sorter) throws IOException {
+
+		try (BufferedReader reader = Files.newBufferedReader(Paths.get(scanPath), StandardCharsets.UTF_8)) {
+
+			String header = reader.readLine();
+
+			if (header == null) {
+				return;
+			}
+
+			boolean snapshot = header.equals(SNAPSHOT_HEADER);
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+
+				if (snapshot) {
+
+					String[] fields = line.split("\t", -1);
+
+					if (fields.length < 4 || !isSize(fields[2])) {
+						System.out.println("Skipping malformed line in " + scanPath + " : " + line);
+						continue;
+					}
+
+					sorter.add(fields[0] + "\t" + fields[1] + "\t" + fields[2] + "\t" + fields[3]);
+					continue;
+				}
+
+				// descriptions may span several lines
+				StringBuilder record = new StringBuilder(line);
+				while (countSeparators(record) < CSV_FIELDS - 1 && (line = reader.readLine()) != null) {
+					record.append('\n').append(line);
+				}
+
+				String[] fields = record.substring(1, record.length() - 1).split(CSV_SEPARATOR, -1);
+
+				if (fields.length != CSV_FIELDS || !isSize(fields[4])) {
+					System.out.println("Skipping malformed line in " + scanPath + " : " + record);
+					continue;
+				}
+
+				sorter.add(fields[0] + "\t" + fields[1] + "\t" + fields[4] + "\t" + fields[7]);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Deletes the temporary files of the previous scan.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		previousScan.close();
+
+	}
+
+	private boolean isSize(String field) {
+
+		try {
+			Long.parseLong(field);
+			return true;
+		} catch (NumberFormatException nfe) {
+			return false;
+		}
+
+	}
+
+	private int countSeparators(CharSequence record) {
+
+		int count = 0;
+		String text = record.toString();
+
+		for (int i = text.indexOf(CSV_SEPARATOR); i >= 0; i = text.indexOf(CSV_SEPARATOR, i + 1)) {
+			count++;
+		}
+
+		return count;
+
+	}
+
+}
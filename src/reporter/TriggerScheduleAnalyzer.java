@@ -0,0 +1,325 @@
+package reporter;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import models.Job;
+import utils.CronSpec;
+
+/**
+ * Counts how many timer triggers and SCM polls fire at each minute of a week,
+ * from the cron specs of the jobs, to find the minutes where many jobs start
+ * at once.
+ *
+ * Each cron line is reduced to bit masks of the minutes, hours and week days
+ * it fires at. Jobs sharing the same masks, which is the common case with
+ * <code>H</code> specs, are counted together, so the week is only expanded
+ * once per distinct schedule whatever the number of jobs.
+ */
+public class TriggerScheduleAnalyzer {
+
+	private static final int MINUTES_PER_DAY = 24 * 60;
+	private static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+	private static final String[] DAYS = { "Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun" };
+	private static final int SAMPLE_JOBS = 5;
+
+	// day of month, month and day of week of each day of the analyzed week,
+	// starting on Monday
+	private final int[][] weekDays = new int[7][];
+
+	private final Map<Schedule, Schedule> schedules = new HashMap<>();
+	private int invalidSpecs;
+
+	private int[] timerFirings;
+	private int[] scmFirings;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param now
+	 *            a time in the week to analyze in milliseconds since the epoch
+	 */
+	public TriggerScheduleAnalyzer(long now) {
+
+		Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(now);
+		cal.add(Calendar.DAY_OF_MONTH, -((cal.get(Calendar.DAY_OF_WEEK) - Calendar.MONDAY + 7) % 7));
+
+		for (int day = 0; day < 7; day++) {
+			weekDays[day] = new int[] { cal.get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1,
+					cal.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY };
+			cal.add(Calendar.DAY_OF_MONTH, 1);
+		}
+
+	}
+
+	/**
+	 * Adds the timer and SCM polling schedules of a job.
+	 *
+	 * @param job
+	 *            a Job object
+	 */
+	public void addJob(Job job) {
+
+		if (job.getTimerTriggerSpec() == null && job.getScmTriggerSpec() == null) {
+			return;
+		}
+
+		// H is derived from the full name of the job, as on the server
+		String jobName = job.getTeamName() + "/" + job.getJobName();
+
+		addSpec(jobName, job.getJobName(), job.getTimerTriggerSpec(), false);
+		addSpec(jobName, job.getJobName(), job.getScmTriggerSpec(), true);
+
+		timerFirings = null;
+		scmFirings = null;
+
+	}
+
+	private void addSpec(String jobName, String hashSeed, String spec, boolean scm) {
+
+		List<CronSpec> cronSpecs;
+		try {
+			cronSpecs = CronSpec.parse(spec, hashSeed);
+		} catch (IllegalArgumentException ex) {
+			System.out.println(jobName + " : " + ex.getMessage());
+			invalidSpecs++;
+			return;
+		}
+
+		for (CronSpec cronSpec : cronSpecs) {
+
+			int dayMask = 0;
+			for (int day = 0; day < 7; day++) {
+				if (cronSpec.matchesDay(weekDays[day][0], weekDays[day][1], weekDays[day][2])) {
+					dayMask |= 1 << day;
+				}
+			}
+
+			if (dayMask == 0) {
+				continue;
+			}
+
+			Schedule key = new Schedule(cronSpec.getMinutes(), (int) cronSpec.getHours(), dayMask);
+			Schedule schedule = schedules.computeIfAbsent(key, k -> k);
+
+			if (scm) {
+				schedule.scmJobs++;
+			} else {
+				schedule.timerJobs++;
+			}
+
+			if (schedule.sampleJobs.size() < SAMPLE_JOBS && !schedule.sampleJobs.contains(jobName)) {
+				schedule.sampleJobs.add(jobName);
+			}
+		}
+
+	}
+
+	/**
+	 * Expands the distinct schedules over the week into the number of firings
+	 * per minute.
+	 */
+	private void expand() {
+
+		if (timerFirings != null) {
+			return;
+		}
+
+		timerFirings = new int[MINUTES_PER_WEEK];
+		scmFirings = new int[MINUTES_PER_WEEK];
+
+		for (Schedule schedule : schedules.values()) {
+			schedule.forEachMinute(minute -> {
+				timerFirings[minute] += schedule.timerJobs;
+				scmFirings[minute] += schedule.scmJobs;
+			});
+		}
+
+	}
+
+	/**
+	 * Writes a CSV file with a line per hour of the week and a column per
+	 * minute, each cell being the number of triggers firing at that minute
+	 *
+	 * @param csvFilePath
+	 *            the path of the CSV file
+	 */
+	public void writeHeatmapToCSVFile(String csvFilePath) {
+
+		if (csvFilePath == null) {
+			return;
+		}
+
+		expand();
+
+		System.out.println("Generating report file : " + csvFilePath);
+
+		try (PrintWriter reportPW = new PrintWriter(new FileOutputStream(csvFilePath, false))) {
+
+			StringBuilder line = new StringBuilder("'Day','Hour'");
+			for (int minute = 0; minute < 60; minute++) {
+				line.append(",'").append(String.format("%02d", minute)).append("'");
+			}
+			reportPW.write(line + "\n");
+
+			for (int hour = 0; hour < 7 * 24; hour++) {
+
+				line.setLength(0);
+				line.append("'").append(DAYS[hour / 24]).append("','").append(String.format("%02d", hour % 24))
+						.append("'");
+
+				for (int minute = hour * 60; minute < hour * 60 + 60; minute++) {
+					line.append(",'").append(timerFirings[minute] + scmFirings[minute]).append("'");
+				}
+
+				reportPW.write(line + "\n");
+			}
+
+		} catch (FileNotFoundException ex) {
+			System.out.println(ex.getMessage());
+		}
+
+	}
+
+	/**
+	 * Writes a CSV file with the minutes of the week where the most triggers
+	 * fire, busiest first, with some of the jobs firing at each one
+	 *
+	 * @param csvFilePath
+	 *            the path of the CSV file
+	 * @param top
+	 *            the number of minutes to write
+	 */
+	public void writeCollisionsToCSVFile(String csvFilePath, int top) {
+
+		if (csvFilePath == null) {
+			return;
+		}
+
+		expand();
+
+		System.out.println("Generating report file : " + csvFilePath);
+
+		int[] busiest = IntStream.range(0, MINUTES_PER_WEEK).filter(minute -> getFirings(minute) > 0).boxed()
+				.sorted((a, b) -> getFirings(a) != getFirings(b) ? Integer.compare(getFirings(b), getFirings(a))
+						: Integer.compare(a, b))
+				.limit(top).mapToInt(Integer::intValue).toArray();
+
+		try (PrintWriter reportPW = new PrintWriter(new FileOutputStream(csvFilePath, false))) {
+
+			reportPW.write("'Day','Time','Firings','Timer Triggers','SCM Polls','Sample Jobs'\n");
+
+			for (int minute : busiest) {
+
+				String time = String.format("%02d:%02d", minute % MINUTES_PER_DAY / 60, minute % 60);
+
+				reportPW.write("'" + DAYS[minute / MINUTES_PER_DAY] + "','" + time + "','" + getFirings(minute)
+						+ "','" + timerFirings[minute] + "','" + scmFirings[minute] + "','"
+						+ String.join(" ", getSampleJobs(minute)) + "'\n");
+			}
+
+		} catch (FileNotFoundException ex) {
+			System.out.println(ex.getMessage());
+		}
+
+		if (invalidSpecs > 0) {
+			System.out.println(invalidSpecs + " trigger specs could not be parsed");
+		}
+
+	}
+
+	private int getFirings(int minute) {
+
+		return timerFirings[minute] + scmFirings[minute];
+
+	}
+
+	private List<String> getSampleJobs(int minute) {
+
+		List<String> jobs = new ArrayList<>();
+
+		for (Schedule schedule : schedules.values()) {
+			if (jobs.size() < SAMPLE_JOBS && schedule.firesAt(minute)) {
+				schedule.sampleJobs.stream().filter(job -> !jobs.contains(job)).limit(SAMPLE_JOBS - jobs.size())
+						.forEach(jobs::add);
+			}
+		}
+
+		return jobs;
+
+	}
+
+	/**
+	 * A distinct weekly schedule and the number of timer triggers and SCM
+	 * polls following it.
+	 */
+	private static class Schedule {
+
+		final long minutes;
+		final int hours;
+		final int days;
+
+		int timerJobs;
+		int scmJobs;
+		final List<String> sampleJobs = new ArrayList<>();
+
+		Schedule(long minutes, int hours, int days) {
+
+			this.minutes = minutes;
+			this.hours = hours;
+			this.days = days;
+		}
+
+		boolean firesAt(int minuteOfWeek) {
+
+			int day = minuteOfWeek / MINUTES_PER_DAY;
+			int hour = minuteOfWeek % MINUTES_PER_DAY / 60;
+			int minute = minuteOfWeek % 60;
+
+			return (days & (1 << day)) != 0 && (hours & (1 << hour)) != 0 && (minutes & (1L << minute)) != 0;
+		}
+
+		void forEachMinute(IntConsumer action) {
+
+			for (int dayBits = days; dayBits != 0; dayBits &= dayBits - 1) {
+				int day = Integer.numberOfTrailingZeros(dayBits);
+
+				for (int hourBits = hours; hourBits != 0; hourBits &= hourBits - 1) {
+					int hour = Integer.numberOfTrailingZeros(hourBits);
+
+					for (long minuteBits = minutes; minuteBits != 0; minuteBits &= minuteBits - 1) {
+						action.accept(day * MINUTES_PER_DAY + hour * 60 + Long.numberOfTrailingZeros(minuteBits));
+					}
+				}
+			}
+		}
+
+		@Override
+		public boolean equals(Object other) {
+
+			if (!(other instanceof Schedule)) {
+				return false;
+			}
+
+			Schedule schedule = (Schedule) other;
+			return minutes == schedule.minutes && hours == schedule.hours && days == schedule.days;
+		}
+
+		@Override
+		public int hashCode() {
+
+			return Objects.hash(minutes, hours, days);
+		}
+	}
+
+}
@@ -0,0 +1,407 @@
+package reporter;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import models.BuildRecord;
+import models.Job;
+import utils.ExternalSorter;
+
+/**
+ * Computes how many builds run at the same time on each node and on the
+ * whole instance, from the build records of the jobs.
+ *
+ * The build records of each job are read by a pool of workers while the scan
+ * goes on. Every build becomes a start and an end event, which are sorted by
+ * node and time on disk, so the memory used doesn't depend on the number of
+ * builds. A single sweep over the sorted events then follows the number of
+ * running builds and the time spent at each level.
+ *
+ * Builds with a duration of 0, which are running or were never completed,
+ * are left out since their end is unknown.
+ */
+public class UtilizationAnalyzer {
+
+	private static final String ALL_NODES = "(all)";
+	private static final long HOUR = 60 * 60 * 1000L;
+	private static final double[] PERCENTILES = { 0.5, 0.9, 0.99 };
+
+	private final long windowStart;
+	private final long windowEnd;
+	private final ExternalSorter events;
+	private final ExecutorService workers;
+
+	private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+	private boolean finished;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param windowStart
+	 *            start of the analyzed period in milliseconds since the
+	 *            epoch, or -1 to start with the first build
+	 * @param now
+	 *            the time of the scan in milliseconds since the epoch, when
+	 *            the analyzed period ends
+	 * @param maxEventsInMemory
+	 *            events kept in memory while sorting them
+	 * @param threads
+	 *            number of workers reading the build records
+	 */
+	public UtilizationAnalyzer(long windowStart, long now, int maxEventsInMemory, int threads) {
+
+		this.windowStart = windowStart;
+		this.windowEnd = windowStart < 0 ? -1 : now;
+		this.events = new ExternalSorter(maxEventsInMemory);
+
+		// a full queue makes the scan read the records itself, so the jobs
+		// waiting for a worker are bounded. The workers are daemons so that a
+		// failing report doesn't leave the JVM waiting for them
+		this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(threads * 16), runnable -> {
+					Thread worker = new Thread(runnable, "utilization-worker");
+					worker.setDaemon(true);
+					return worker;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+
+	}
+
+	/**
+	 * Hands the builds of a job to the workers. The job must be able to read
+	 * its builds until {@link #finish()} returns.
+	 *
+	 * @param job
+	 *            a Job object
+	 */
+	public void addJob(Job job) {
+
+		workers.execute(() -> addBuilds(job.getBuildRecords()));
+
+	}
+
+	private void addBuilds(List<BuildRecord> records) {
+
+		try {
+			for (BuildRecord record : records) {
+
+				long start = record.getStartTime();
+				long end = start + record.getDuration();
+
+				if (windowStart >= 0) {
+					start = Math.max(start, windowStart);
+					end = Math.min(end, windowEnd);
+				}
+
+				if (end <= start) {
+					continue;
+				}
+
+				firstStart.accumulateAndGet(start, Math::min);
+				lastEnd.accumulateAndGet(end, Math::max);
+
+				addInterval("", start, end);
+				addInterval(record.getBuiltOn(), start, end);
+			}
+		} catch (IOException ex) {
+			System.out.println(ex.getMessage());
+		}
+
+	}
+
+	/**
+	 * Adds the events of a build to a series. Ends sort before starts at the
+	 * same time, so a build starting when another one ends doesn't overlap
+	 * it, and the series of all nodes, with an empty name, sorts first.
+	 */
+	private void addInterval(String series, long start, long end) throws IOException {
+
+		String node = series.replace('\t', ' ');
+		events.add(node + "\t" + String.format("%019d", start) + "\t1");
+		events.add(node + "\t" + String.format("%019d", end) + "\t0");
+
+	}
+
+	/**
+	 * Waits for the workers to read the builds of all the jobs added.
+	 */
+	public void finish() {
+
+		if (finished) {
+			return;
+		}
+
+		finished = true;
+		workers.shutdown();
+
+		try {
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+
+	}
+
+	/**
+	 * Writes a CSV file with the number of builds, the peak and percentiles
+	 * of concurrent builds and the idle time of each node and of all the
+	 * nodes, and optionally a CSV file with the peak and average concurrent
+	 * builds of each hour in which builds ran on the instance
+	 *
+	 * @param csvFilePath
+	 *            the path of the CSV file, per node
+	 * @param timelineCsvFilePath
+	 *            the path of the CSV file, per hour, or <code>null</code>
+	 */
+	public void writeToCSVFiles(String csvFilePath, String timelineCsvFilePath) {
+
+		finish();
+
+		if (csvFilePath == null && timelineCsvFilePath == null) {
+			close();
+			return;
+		}
+
+		long start = windowStart >= 0 ? windowStart : firstStart.get();
+		long end = windowStart >= 0 ? windowEnd : lastEnd.get();
+
+		PrintWriter reportPW = null;
+		PrintWriter timelinePW = null;
+
+		try {
+
+			if (csvFilePath != null) {
+				System.out.println("Generating report file : " + csvFilePath);
+				reportPW = new PrintWriter(new FileOutputStream(csvFilePath, false));
+				reportPW.write("'Node','Builds','Build Hours','Peak Builds','Peak Time','P50 Builds','P90 Builds',"
+						+ "'P99 Builds','Idle Percent'\n");
+			}
+
+			if (timelineCsvFilePath != null) {
+				System.out.println("Generating report file : " + timelineCsvFilePath);
+				timelinePW = new PrintWriter(new FileOutputStream(timelineCsvFilePath, false));
+				timelinePW.write("'Hour','Peak Builds','Average Builds'\n");
+			}
+
+			Iterator<String> sorted = events.sorted();
+			Series series = null;
+
+			while (sorted.hasNext()) {
+
+				String[] event = sorted.next().split("\t");
+				String node = event[0];
+
+				if (series == null || !series.node.equals(node)) {
+
+					if (series != null) {
+						series.end(end);
+						writeSeries(reportPW, series);
+					}
+
+					series = new Series(node, start, node.isEmpty() ? timelinePW : null);
+				}
+
+				series.advance(Long.parseLong(event[1]), event[2].equals("1"));
+			}
+
+			if (series != null) {
+				series.end(end);
+				writeSeries(reportPW, series);
+			}
+
+		} catch (IOException | UncheckedIOException ex) {
+			System.out.println(ex.getMessage());
+		} finally {
+			if (reportPW != null) {
+				reportPW.close();
+			}
+			if (timelinePW != null) {
+				timelinePW.close();
+			}
+			close();
+		}
+
+	}
+
+	private void writeSeries(PrintWriter reportPW, Series series) {
+
+		if (reportPW == null) {
+			return;
+		}
+
+		long total = Arrays.stream(series.timeAtLevel).sum();
+		String idle = total == 0 ? "" : String.format("%.1f", 100.0 * series.timeAtLevel[0] / total);
+
+		StringBuilder line = new StringBuilder();
+		line.append("'").append(series.node.isEmpty() ? ALL_NODES : series.node).append("','").append(series.builds)
+				.append("','").append(String.format("%.1f", (double) series.busyTime / HOUR)).append("','")
+				.append(series.peak).append("','").append(series.peak == 0 ? "" : new Date(series.peakTime))
+				.append("'");
+
+		for (double percentile : PERCENTILES) {
+			line.append(",'").append(series.getPercentile(percentile, total)).append("'");
+		}
+
+		line.append(",'").append(idle).append("'\n");
+		reportPW.write(line.toString());
+
+	}
+
+	private void close() {
+
+		try {
+			events.close();
+		} catch (IOException ex) {
+			System.out.println(ex.getMessage());
+		}
+
+	}
+
+	/**
+	 * The number of builds running on a node, or on all the nodes, as the
+	 * sweep goes through its events in time order.
+	 */
+	private static class Series {
+
+		final String node;
+		final PrintWriter timelinePW;
+		final SimpleDateFormat hourFormat = new SimpleDateFormat("yyyy-MM-dd HH:00");
+
+		long[] timeAtLevel = new long[8];
+		int level;
+		long time;
+		int builds;
+		long busyTime;
+		int peak;
+		long peakTime;
+
+		// hour being followed for the timeline
+		long hour = -1;
+		int hourPeak;
+		long hourBusyTime;
+
+		Series(String node, long start, PrintWriter timelinePW) {
+
+			this.node = node;
+			this.time = start;
+			this.timelinePW = timelinePW;
+		}
+
+		/**
+		 * Moves the sweep to the time of an event and applies it.
+		 */
+		void advance(long eventTime, boolean buildStart) {
+
+			moveTo(eventTime);
+
+			level += buildStart ? 1 : -1;
+			builds += buildStart ? 1 : 0;
+
+			if (level >= timeAtLevel.length) {
+				timeAtLevel = Arrays.copyOf(timeAtLevel, timeAtLevel.length * 2);
+			}
+
+			if (level > peak) {
+				peak = level;
+				peakTime = eventTime;
+			}
+
+			if (timelinePW != null) {
+				startHour(eventTime);
+				hourPeak = Math.max(hourPeak, level);
+			}
+		}
+
+		/**
+		 * Moves the sweep to the end of the analyzed period.
+		 */
+		void end(long endTime) {
+
+			moveTo(endTime);
+
+			if (timelinePW != null && hour >= 0) {
+				writeHour();
+			}
+		}
+
+		private void moveTo(long newTime) {
+
+			if (newTime <= time) {
+				return;
+			}
+
+			timeAtLevel[level] += newTime - time;
+			busyTime += level * (newTime - time);
+
+			if (timelinePW != null && level > 0) {
+				for (long from = time; from < newTime; from = (from / HOUR + 1) * HOUR) {
+					startHour(from);
+					hourPeak = Math.max(hourPeak, level);
+					hourBusyTime += level * (Math.min(newTime, (from / HOUR + 1) * HOUR) - from);
+				}
+			}
+
+			time = newTime;
+		}
+
+		/**
+		 * Writes the hour being followed when the sweep leaves it, skipping
+		 * the hours in which no build ran.
+		 */
+		private void startHour(long from) {
+
+			long newHour = from / HOUR;
+
+			if (newHour == hour) {
+				return;
+			}
+
+			if (hour >= 0) {
+				writeHour();
+			}
+
+			hour = newHour;
+			hourPeak = level;
+			hourBusyTime = 0;
+		}
+
+		private void writeHour() {
+
+			if (hourPeak > 0) {
+				timelinePW.write("'" + hourFormat.format(new Date(hour * HOUR)) + "','" + hourPeak + "','"
+						+ String.format("%.2f", (double) hourBusyTime / HOUR) + "'\n");
+			}
+		}
+
+		/**
+		 * @return the smallest number of concurrent builds that the node
+		 *         doesn't exceed for the given fraction of the time
+		 */
+		int getPercentile(double percentile, long total) {
+
+			long covered = 0;
+
+			for (int i = 0; i < timeAtLevel.length; i++) {
+				covered += timeAtLevel[i];
+				if (covered >= percentile * total) {
+					return i;
+				}
+			}
+
+			return peak;
+		}
+	}
+
+}
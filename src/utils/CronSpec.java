@@ -0,0 +1,276 @@
+package utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class CronSpec {
+
+    private static final List<String> MONTH_NAMES = Arrays.asList("JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL",
+            "AUG", "SEP", "OCT", "NOV", "DEC");
+    private static final List<String> DAY_NAMES = Arrays.asList("SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT");
+
+    // one bit per allowed value of each field
+    private final long minutes;
+    private final long hours;
+    private final long daysOfMonth;
+    private final long months;
+    private final long daysOfWeek;
+
+    private CronSpec(long minutes, long hours, long daysOfMonth, long months, long daysOfWeek) {
+
+        this.minutes = minutes;
+        this.hours = hours;
+        this.daysOfMonth = daysOfMonth;
+        this.months = months;
+        this.daysOfWeek = daysOfWeek;
+
+    }
+
+    /**
+     * Parses the spec of a Hudson trigger: one cron line per schedule, with
+     * five fields or an <code>@hourly</code>, <code>@daily</code>,
+     * <code>@midnight</code>, <code>@weekly</code>, <code>@monthly</code> or
+     * <code>@yearly</code> keyword. Blank lines, comments and variable lines
+     * such as <code>TZ=</code> are ignored. <code>H</code> is replaced by a
+     * value derived from the hash seed the way Hudson does, so that it is the
+     * same value the server picks for the job.
+     *
+     * @param spec the text of the trigger spec
+     * @param hashSeed the value <code>H</code> is derived from, usually the
+     * full name of the job
+     * @return a CronSpec per schedule line
+     * @throws IllegalArgumentException if a line is not a valid cron line
+     */
+    public static List<CronSpec> parse(String spec, String hashSeed) {
+
+        List<CronSpec> specs = new ArrayList<>();
+
+        if (spec == null) {
+            return specs;
+        }
+
+        Random hash = hash(hashSeed);
+
+        for (String line : spec.split("\n")) {
+
+            line = line.trim();
+
+            if (line.isEmpty() || line.startsWith("#") || line.matches("^[A-Za-z_]+=.*")) {
+                continue;
+            }
+
+            specs.add(parseLine(expandKeyword(line), hash));
+        }
+
+        return specs;
+    }
+
+    /**
+     * @return the minutes of the hour the schedule fires at, bit 0 being
+     * minute 0
+     */
+    public long getMinutes() {
+
+        return minutes;
+    }
+
+    /**
+     * @return the hours of the day the schedule fires at, bit 0 being
+     * midnight
+     */
+    public long getHours() {
+
+        return hours;
+    }
+
+    /**
+     * @param dayOfMonth day of the month, from 1
+     * @param month month of the year, from 1
+     * @param dayOfWeek day of the week, 0 being Sunday
+     * @return true if the schedule fires on that day, which like in Hudson
+     * must match both the day of month and the day of week fields
+     */
+    public boolean matchesDay(int dayOfMonth, int month, int dayOfWeek) {
+
+        return (months & (1L << month)) != 0 && (daysOfMonth & (1L << dayOfMonth)) != 0
+                && (daysOfWeek & (1L << dayOfWeek)) != 0;
+    }
+
+    /**
+     * @return the random numbers <code>H</code> is taken from: seeded with
+     * the MD5 digest of the seed, folded into 8 bytes, as Hudson does
+     */
+    private static Random hash(String seed) {
+
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("MD5").digest(seed.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        for (int i = 8; i < digest.length; i++) {
+            digest[i % 8] ^= digest[i];
+        }
+
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) + (digest[i] & 0xFF);
+        }
+
+        return new Random(value);
+    }
+
+    private static String expandKeyword(String line) {
+
+        switch (line) {
+            case "@yearly":
+            case "@annually":
+                return "H H H H *";
+            case "@monthly":
+                return "H H H * *";
+            case "@weekly":
+                return "H H * * H";
+            case "@daily":
+                return "H H * * *";
+            case "@midnight":
+                return "H H(0-2) * * *";
+            case "@hourly":
+                return "H * * * *";
+            default:
+                return line;
+        }
+    }
+
+    private static CronSpec parseLine(String line, Random hash) {
+
+        String[] fields = line.split("\\s+");
+
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Invalid cron line, expected 5 fields: " + line);
+        }
+
+        long minutes = parseField(fields[0], 0, 59, null, hash);
+        long hours = parseField(fields[1], 0, 23, null, hash);
+        long daysOfMonth = parseField(fields[2], 1, 31, null, hash);
+        long months = parseField(fields[3], 1, 12, MONTH_NAMES, hash);
+        long daysOfWeek = parseField(fields[4], 0, 7, DAY_NAMES, hash);
+
+        // 7 is also Sunday
+        if ((daysOfWeek & (1L << 7)) != 0) {
+            daysOfWeek = (daysOfWeek | 1L) & ~(1L << 7);
+        }
+
+        return new CronSpec(minutes, hours, daysOfMonth, months, daysOfWeek);
+    }
+
+    /**
+     * Parses a comma separated list of <code>*</code>, <code>H</code>,
+     * <code>H(a-b)</code>, values and <code>a-b</code> ranges, each with an
+     * optional <code>/step</code>.
+     *
+     * @return one bit per allowed value
+     */
+    private static long parseField(String field, int min, int max, List<String> names, Random hash) {
+
+        long bits = 0;
+
+        for (String token : field.split(",")) {
+
+            int step = 1;
+            int slash = token.indexOf('/');
+            if (slash >= 0) {
+                step = parseNumber(token.substring(slash + 1), 1, max - min + 1, null, field);
+                token = token.substring(0, slash);
+            }
+
+            int first;
+            int last;
+
+            if (token.equals("*")) {
+
+                first = min;
+                last = max;
+
+            } else if (token.startsWith("H")) {
+
+                if (token.equals("H")) {
+                    // as in Hudson, the day of month stops at 28, which every
+                    // month has, and the day of week at 6, since 7 is Sunday
+                    first = min;
+                    last = max == 31 ? 28 : max == 7 ? 6 : max;
+                } else if (token.startsWith("H(") && token.endsWith(")")) {
+                    String[] range = token.substring(2, token.length() - 1).split("-");
+                    if (range.length != 2) {
+                        throw new IllegalArgumentException("Invalid H range in cron field " + field);
+                    }
+                    first = parseNumber(range[0], min, max, names, field);
+                    last = parseNumber(range[1], first, max, names, field);
+                } else {
+                    throw new IllegalArgumentException("Invalid cron field " + field);
+                }
+
+                if (step > last - first + 1) {
+                    throw new IllegalArgumentException("Step " + step + " larger than the H range in cron field "
+                            + field);
+                }
+
+                // as in Hudson, a step of 1 picks a single value like H
+                if (step == 1) {
+                    first = first + hash.nextInt(last - first + 1);
+                    last = first;
+                } else {
+                    first = first + hash.nextInt(step);
+                }
+
+            } else if (token.contains("-")) {
+
+                String[] range = token.split("-");
+                if (range.length != 2) {
+                    throw new IllegalArgumentException("Invalid range in cron field " + field);
+                }
+                first = parseNumber(range[0], min, max, names, field);
+                last = parseNumber(range[1], first, max, names, field);
+
+            } else {
+
+                first = parseNumber(token, min, max, names, field);
+                last = slash < 0 ? first : max;
+
+            }
+
+            for (int value = first; value <= last; value += step) {
+                bits |= 1L << value;
+            }
+        }
+
+        return bits;
+    }
+
+    private static int parseNumber(String value, int min, int max, List<String> names, String field) {
+
+        int number;
+
+        if (names != null && names.contains(value.toUpperCase())) {
+            number = names.indexOf(value.toUpperCase()) + (names == MONTH_NAMES ? 1 : 0);
+        } else {
+            try {
+                number = Integer.parseInt(value);
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException("Invalid value " + value + " in cron field " + field);
+            }
+        }
+
+        if (number < min || number > max) {
+            throw new IllegalArgumentException("Value " + value + " out of range in cron field " + field);
+        }
+
+        return number;
+    }
+
+}
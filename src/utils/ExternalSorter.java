@@ -0,0 +1,187 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+public class ExternalSorter implements Closeable {
+
+    private final int maxLinesInMemory;
+    private final ArrayList<String> buffer = new ArrayList<>();
+    private final List<File> runFiles = new ArrayList<>();
+    private final List<BufferedReader> runReaders = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param maxLinesInMemory number of lines kept in memory before they are
+     * sorted and written to a temporary run file
+     *
+     */
+    public ExternalSorter(int maxLinesInMemory) {
+
+        if (maxLinesInMemory < 1) {
+            throw new IllegalArgumentException("maxLinesInMemory must be positive");
+        }
+
+        this.maxLinesInMemory = maxLinesInMemory;
+
+    }
+
+    /**
+     * Adds a line to be sorted. It is safe to add lines from several threads.
+     *
+     * @param line a line of text without line terminators
+     * @throws IOException if a run file can not be written
+     */
+    public synchronized void add(String line) throws IOException {
+
+        buffer.add(line);
+
+        if (buffer.size() >= maxLinesInMemory) {
+            spill();
+        }
+
+    }
+
+    /**
+     * Returns all the added lines in their natural String order. When lines
+     * were spilled to run files, the runs are merged as the iterator is
+     * consumed, holding only one line per run in memory.
+     *
+     * @return an iterator over the sorted lines, which throws
+     * UncheckedIOException if a run file can not be read
+     * @throws IOException if a run file can not be written or opened
+     */
+    public synchronized Iterator<String> sorted() throws IOException {
+
+        if (runFiles.isEmpty()) {
+            Collections.sort(buffer);
+            return buffer.iterator();
+        }
+
+        spill();
+
+        PriorityQueue<Run> runs = new PriorityQueue<>();
+        for (File runFile : runFiles) {
+
+            BufferedReader reader = Files.newBufferedReader(runFile.toPath(), StandardCharsets.UTF_8);
+            runReaders.add(reader);
+
+            Run run = new Run(reader);
+            if (run.advance()) {
+                runs.add(run);
+            }
+        }
+
+        return new Iterator<String>() {
+
+            @Override
+            public boolean hasNext() {
+                return !runs.isEmpty();
+            }
+
+            @Override
+            public String next() {
+
+                Run run = runs.poll();
+                if (run == null) {
+                    throw new NoSuchElementException();
+                }
+
+                String line = run.line;
+                try {
+                    if (run.advance()) {
+                        runs.add(run);
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+
+                return line;
+            }
+        };
+
+    }
+
+    /**
+     * Closes and deletes the temporary run files.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+
+        for (BufferedReader reader : runReaders) {
+            reader.close();
+        }
+
+        for (File runFile : runFiles) {
+            runFile.delete();
+        }
+
+        runReaders.clear();
+        runFiles.clear();
+        buffer.clear();
+
+    }
+
+    /**
+     * Sorts the lines in memory and writes them to a new run file.
+     */
+    private void spill() throws IOException {
+
+        if (buffer.isEmpty()) {
+            return;
+        }
+
+        Collections.sort(buffer);
+
+        File runFile = File.createTempFile("hudson-sort", ".run");
+        runFile.deleteOnExit();
+        runFiles.add(runFile);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(runFile.toPath(), StandardCharsets.UTF_8)) {
+            for (String line : buffer) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+
+        buffer.clear();
+
+    }
+
+    /**
+     * A sorted run file being merged, positioned on its current line.
+     */
+    private static class Run implements Comparable<Run> {
+
+        private final BufferedReader reader;
+        private String line;
+
+        Run(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        boolean advance() throws IOException {
+            line = reader.readLine();
+            return line != null;
+        }
+
+        @Override
+        public int compareTo(Run other) {
+            return line.compareTo(other.line);
+        }
+    }
+
+}
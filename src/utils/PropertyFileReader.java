@@ -17,6 +17,32 @@ public class PropertyFileReader {
     public final String JOBS_BIGGER_THAN_THRESHOLD_KB_CVS_REPORT = "JOBS_BIGGER_THAN_THRESHOLD_KB_CVS_REPORT";
     public final String TRESHOLD_KILOBYTES = "TRESHOLD_KILOBYTES";
     public final String JOBS_RUN_MORE_THAN_ONE_MONTH_AGO_CVS_REPORT = "JOBS_RUN_MORE_THAN_ONE_MONTH_AGO_CVS_REPORT";
+    public final String SCAN_MODE = "SCAN_MODE";
+    public final String ESTIMATE_CSV_REPORT = "ESTIMATE_CSV_REPORT";
+    public final String ESTIMATE_JOB_FRACTION = "ESTIMATE_JOB_FRACTION";
+    public final String ESTIMATE_BUILD_FRACTION = "ESTIMATE_BUILD_FRACTION";
+    public final String ESTIMATE_TIME_BUDGET_SECONDS = "ESTIMATE_TIME_BUDGET_SECONDS";
+    public final String ESTIMATE_TARGET_ERROR_PERCENT = "ESTIMATE_TARGET_ERROR_PERCENT";
+    public final String RETENTION_POLICIES = "RETENTION_POLICIES";
+    public final String RETENTION_CSV_REPORT = "RETENTION_CSV_REPORT";
+    public final String RETENTION_BY_TEAM_CSV_REPORT = "RETENTION_BY_TEAM_CSV_REPORT";
+    public final String DISTRIBUTION_CSV_REPORT = "DISTRIBUTION_CSV_REPORT";
+    public final String SIZE_HISTOGRAM_MIN_KB = "SIZE_HISTOGRAM_MIN_KB";
+    public final String SIZE_HISTOGRAM_FACTOR = "SIZE_HISTOGRAM_FACTOR";
+    public final String SIZE_HISTOGRAM_BUCKETS = "SIZE_HISTOGRAM_BUCKETS";
+    public final String IDLE_HISTOGRAM_MONTHS = "IDLE_HISTOGRAM_MONTHS";
+    public final String SNAPSHOT_FILE = "SNAPSHOT_FILE";
+    public final String DIFF_PREVIOUS_SCAN = "DIFF_PREVIOUS_SCAN";
+    public final String DIFF_CURRENT_SCAN = "DIFF_CURRENT_SCAN";
+    public final String DIFF_CSV_REPORT = "DIFF_CSV_REPORT";
+    public final String DIFF_SIZE_GROWTH_PERCENT = "DIFF_SIZE_GROWTH_PERCENT";
+    public final String TRIGGER_HEATMAP_CSV_REPORT = "TRIGGER_HEATMAP_CSV_REPORT";
+    public final String TRIGGER_COLLISIONS_CSV_REPORT = "TRIGGER_COLLISIONS_CSV_REPORT";
+    public final String TRIGGER_COLLISIONS_TOP = "TRIGGER_COLLISIONS_TOP";
+    public final String UTILIZATION_CSV_REPORT = "UTILIZATION_CSV_REPORT";
+    public final String UTILIZATION_TIMELINE_CSV_REPORT = "UTILIZATION_TIMELINE_CSV_REPORT";
+    public final String UTILIZATION_DAYS = "UTILIZATION_DAYS";
+    public final String BUILD_CONSISTENCY_CSV_REPORT = "BUILD_CONSISTENCY_CSV_REPORT";
 
     /**
      * Constructor.
@@ -0,0 +1,327 @@
+package utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public class TarReader {
+
+    private static final int BLOCK_SIZE = 512;
+
+    private final InputStream input;
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private long entryRemaining;
+    private long entryPadding;
+
+    /**
+     * An entry of a tar archive, read from its header.
+     */
+    public static class Entry {
+
+        private final String name;
+        private final String linkName;
+        private final long size;
+        private final long lastModified;
+        private final char type;
+
+        Entry(String name, String linkName, long size, long lastModified, char type) {
+            this.name = name;
+            this.linkName = linkName;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.type = type;
+        }
+
+        /**
+         * @return the path of the entry inside the archive
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the target of a link entry, as stored in the archive, or an
+         * empty string
+         */
+        public String getLinkName() {
+            return linkName;
+        }
+
+        /**
+         * @return the size in bytes of the entry data
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the modification time of the entry in milliseconds since
+         * the epoch
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return true if the entry is a directory
+         */
+        public boolean isDirectory() {
+            return type == '5' || name.endsWith("/");
+        }
+
+        /**
+         * @return true if the entry is a symbolic link
+         */
+        public boolean isSymbolicLink() {
+            return type == '2';
+        }
+
+        /**
+         * @return true if the entry is a regular file
+         */
+        public boolean isFile() {
+            return (type == '0' || type == '\0' || type == '7') && !name.endsWith("/");
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param input an uncompressed tar stream, read sequentially
+     *
+     */
+    public TarReader(InputStream input) {
+
+        this.input = input;
+
+    }
+
+    /**
+     * Skips what is left of the current entry and reads the header of the
+     * next one. GNU long names and PAX paths, and the long link names of
+     * both, are applied to the entry they describe.
+     *
+     * @return the next entry or <code>null</code> at the end of the archive
+     * @throws IOException if the archive can not be read or is truncated
+     */
+    public Entry getNextEntry() throws IOException {
+
+        String longName = null;
+        String longLinkName = null;
+
+        while (true) {
+
+            skip(entryRemaining + entryPadding);
+            entryRemaining = 0;
+            entryPadding = 0;
+
+            if (!readBlock(header) || isZeroBlock(header)) {
+                return null;
+            }
+
+            char type = (char) header[156];
+            long size = parseNumber(header, 124, 12);
+            long lastModified = parseNumber(header, 136, 12) * 1000;
+
+            entryRemaining = size;
+            entryPadding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+
+            if (type == 'L') {
+                longName = trimNulls(new String(readData(size), StandardCharsets.UTF_8));
+                continue;
+            }
+
+            if (type == 'K') {
+                longLinkName = trimNulls(new String(readData(size), StandardCharsets.UTF_8));
+                continue;
+            }
+
+            if (type == 'x') {
+                String records = new String(readData(size), StandardCharsets.UTF_8);
+                String path = parsePaxRecord(records, "path");
+                String linkPath = parsePaxRecord(records, "linkpath");
+                longName = path != null ? path : longName;
+                longLinkName = linkPath != null ? linkPath : longLinkName;
+                continue;
+            }
+
+            if (type == 'g') {
+                continue;
+            }
+
+            String name = longName;
+            if (name == null) {
+                name = parseString(header, 0, 100);
+                String prefix = parseString(header, 345, 155);
+                if (!prefix.isEmpty() && new String(header, 257, 5, StandardCharsets.US_ASCII).equals("ustar")) {
+                    name = prefix + "/" + name;
+                }
+            }
+
+            String linkName = longLinkName != null ? longLinkName : parseString(header, 157, 100);
+
+            return new Entry(name, linkName, size, lastModified, type);
+        }
+
+    }
+
+    /**
+     * Returns a stream over the data of the current entry. Closing the stream
+     * doesn't close the archive.
+     *
+     * @return the data of the entry returned by the last call to
+     * {@link #getNextEntry()}
+     */
+    public InputStream getEntryStream() {
+
+        return new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                if (entryRemaining <= 0) {
+                    return -1;
+                }
+                int b = input.read();
+                if (b < 0) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                entryRemaining--;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (entryRemaining <= 0) {
+                    return -1;
+                }
+                int read = input.read(buffer, offset, (int) Math.min(length, entryRemaining));
+                if (read < 0) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                entryRemaining -= read;
+                return read;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+    }
+
+    private byte[] readData(long size) throws IOException {
+
+        byte[] data = new byte[(int) size];
+        int offset = 0;
+        while (offset < data.length) {
+            int read = input.read(data, offset, data.length - offset);
+            if (read < 0) {
+                throw new EOFException("Truncated tar entry");
+            }
+            offset += read;
+        }
+
+        entryRemaining = 0;
+        return data;
+    }
+
+    private boolean readBlock(byte[] block) throws IOException {
+
+        int offset = 0;
+        while (offset < block.length) {
+            int read = input.read(block, offset, block.length - offset);
+            if (read < 0) {
+                if (offset == 0) {
+                    return false;
+                }
+                throw new EOFException("Truncated tar header");
+            }
+            offset += read;
+        }
+
+        return true;
+    }
+
+    private void skip(long bytes) throws IOException {
+
+        byte[] buffer = new byte[8192];
+        while (bytes > 0) {
+            int read = input.read(buffer, 0, (int) Math.min(buffer.length, bytes));
+            if (read < 0) {
+                throw new EOFException("Truncated tar entry");
+            }
+            bytes -= read;
+        }
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Parses an octal number of a header field, or a base-256 one when the
+     * high bit of the first byte is set.
+     */
+    private static long parseNumber(byte[] block, int offset, int length) {
+
+        if ((block[offset] & 0x80) != 0) {
+            long value = block[offset] & 0x7f;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (block[i] & 0xff);
+            }
+            return value;
+        }
+
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = block[i];
+            if (b >= '0' && b <= '7') {
+                value = value * 8 + (b - '0');
+            } else if (b == 0 || (b == ' ' && value > 0)) {
+                break;
+            }
+        }
+
+        return value;
+    }
+
+    private static String parseString(byte[] block, int offset, int length) {
+
+        int end = offset;
+        while (end < offset + length && block[end] != 0) {
+            end++;
+        }
+
+        return new String(block, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String trimNulls(String value) {
+
+        int end = value.indexOf('\0');
+        return end < 0 ? value : value.substring(0, end);
+    }
+
+    /**
+     * @return a record of PAX extended headers or <code>null</code>
+     */
+    private static String parsePaxRecord(String records, String key) {
+
+        for (String record : records.split("\n")) {
+            int space = record.indexOf(' ');
+            if (space > 0 && record.startsWith(key + "=", space + 1)) {
+                return record.substring(space + key.length() + 2);
+            }
+        }
+
+        return null;
+    }
+
+}